@@ -0,0 +1,388 @@
+package com.example;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+import com.rabbitmq.client.impl.AMQImpl;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RabbitMQ em memória para {@link CargaPontaAPonta}: exchanges topic, filas FIFO e canais com
+ * prefetch, ack simples e cumulativo, nack, cancelamento e fechamento.
+ *
+ * Como no cliente, cada canal entrega suas mensagens em série em uma thread própria e o
+ * {@code CancelOk} chega depois da última entrega; mensagens sem ack voltam para a fila quando o
+ * canal fecha. Só as operações usadas pelo gerador e por {@link ConsumidorImagens} existem, as
+ * outras lançam {@link UnsupportedOperationException}. Prioridades ({@code x-max-priority}) são ignoradas.
+ */
+final class BrokerMemoria {
+
+    /** Chamado a cada mensagem confirmada, na thread que fez o ack. */
+    interface AoConfirmar {
+        void confirmada(String fila, long publicadaNs, long confirmadaNs);
+    }
+
+    private static final class MensagemMemoria {
+        final String exchange;
+        final String routingKey;
+        final AMQP.BasicProperties propriedades;
+        final byte[] corpo;
+        final long publicadaNs;
+        // Já foi entregue e voltou para a fila (nack ou canal fechado): Envelope.isRedeliver()
+        volatile boolean reentregue;
+
+        MensagemMemoria(String exchange, String routingKey, AMQP.BasicProperties propriedades, byte[] corpo) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.propriedades = propriedades;
+            this.corpo = corpo;
+            this.publicadaNs = System.nanoTime();
+        }
+    }
+
+    private static final class Ligacao {
+        final String exchange;
+        final String padrao;
+        final String fila;
+
+        Ligacao(String exchange, String padrao, String fila) {
+            this.exchange = exchange;
+            this.padrao = padrao;
+            this.fila = fila;
+        }
+    }
+
+    private final Map<String, LinkedBlockingDeque<MensagemMemoria>> filas = new ConcurrentHashMap<>();
+    private final List<Ligacao> ligacoes = new CopyOnWriteArrayList<>();
+    private final List<CanalMemoria> canais = new CopyOnWriteArrayList<>();
+    private final AtomicInteger proximoCanal = new AtomicInteger();
+    private final AtomicInteger proximoConsumidor = new AtomicInteger();
+    private final AoConfirmar aoConfirmar;
+    private final Connection conexao;
+    private volatile boolean aberto = true;
+
+    BrokerMemoria(AoConfirmar aoConfirmar) {
+        this.aoConfirmar = aoConfirmar;
+        this.conexao = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, metodo, args) -> naConexao(proxy, metodo, args));
+    }
+
+    /** Uma conexão que abre canais neste broker; use como a de uma {@code ConnectionFactory}. */
+    Connection conexao() {
+        return conexao;
+    }
+
+    /** Mensagens prontas (ainda não entregues) em uma fila. */
+    int prontas(String fila) {
+        LinkedBlockingDeque<MensagemMemoria> mensagens = filas.get(fila);
+        return mensagens != null ? mensagens.size() : 0;
+    }
+
+    private Object naConexao(Object proxy, Method metodo, Object[] args) {
+        switch (metodo.getName()) {
+            case "createChannel":
+                CanalMemoria canal = new CanalMemoria(proximoCanal.incrementAndGet());
+                canais.add(canal);
+                return canal.proxy;
+            case "isOpen":
+                return aberto;
+            case "close":
+            case "abort":
+                aberto = false;
+                for (CanalMemoria c : canais) {
+                    c.fechar();
+                }
+                return null;
+            case "addShutdownListener":
+            case "removeShutdownListener":
+                return null;
+            default:
+                return doObjeto(proxy, metodo, args, "conexão em memória");
+        }
+    }
+
+    private void publicar(String exchange, String routingKey, AMQP.BasicProperties propriedades, byte[] corpo) {
+        // Como no RabbitMQ, uma mensagem que não casa com nenhuma ligação é descartada
+        for (Ligacao ligacao : ligacoes) {
+            if (ligacao.exchange.equals(exchange) && casa(ligacao.padrao.split("\\."), 0, routingKey.split("\\."), 0)) {
+                filas.get(ligacao.fila).addLast(new MensagemMemoria(exchange, routingKey, propriedades, corpo));
+            }
+        }
+    }
+
+    /** Casamento de routing key de exchange topic: {@code *} é uma palavra e {@code #} zero ou mais. */
+    static boolean casa(String[] padrao, int p, String[] chave, int c) {
+        if (p == padrao.length) return c == chave.length;
+        if (padrao[p].equals("#")) {
+            for (int i = c; i <= chave.length; i++) {
+                if (casa(padrao, p + 1, chave, i)) return true;
+            }
+            return false;
+        }
+        if (c == chave.length) return false;
+        return (padrao[p].equals("*") || padrao[p].equals(chave[c])) && casa(padrao, p + 1, chave, c + 1);
+    }
+
+    private static Object doObjeto(Object proxy, Method metodo, Object[] args, String descricao) {
+        switch (metodo.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return descricao;
+            default:
+                throw new UnsupportedOperationException(descricao + ": " + metodo.getName());
+        }
+    }
+
+    /** Uma mensagem entregue e ainda sem ack. */
+    private static final class Pendente {
+        final String fila;
+        final MensagemMemoria mensagem;
+
+        Pendente(String fila, MensagemMemoria mensagem) {
+            this.fila = fila;
+            this.mensagem = mensagem;
+        }
+    }
+
+    private final class CanalMemoria {
+
+        final int numero;
+        final Channel proxy;
+        private final NavigableMap<Long, Pendente> pendentes = new TreeMap<>();
+        private long ultimaTag;
+        // 0 = sem limite, como no basicQos
+        private int prefetch;
+        private boolean aberto = true;
+        // Consumo ativo (basicConsume sem basicCancel); um por canal, como em ConsumidorImagens
+        private boolean consumindo;
+        // Thread do último consumo; um consumo refeito no canal só começa depois que ela entrega o CancelOk
+        private Thread entrega;
+
+        CanalMemoria(int numero) {
+            this.numero = numero;
+            this.proxy = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+                    new Class<?>[]{Channel.class}, (p, metodo, args) -> invocar(p, metodo, args));
+        }
+
+        private Object invocar(Object p, Method metodo, Object[] args) throws IOException {
+            switch (metodo.getName()) {
+                case "getChannelNumber":
+                    return numero;
+                case "getConnection":
+                    return conexao;
+                case "isOpen":
+                    synchronized (this) {
+                        return aberto;
+                    }
+                case "close":
+                case "abort":
+                    fechar();
+                    return null;
+                case "addShutdownListener":
+                case "removeShutdownListener":
+                    return null;
+                case "exchangeDeclare":
+                    verificarAberto();
+                    return new AMQImpl.Exchange.DeclareOk();
+                case "queueDeclare":
+                    verificarAberto();
+                    filas.computeIfAbsent((String) args[0], nome -> new LinkedBlockingDeque<>());
+                    return declareOk((String) args[0]);
+                case "queueDeclarePassive":
+                    verificarAberto();
+                    if (!filas.containsKey((String) args[0])) throw new IOException("fila inexistente: " + args[0]);
+                    return declareOk((String) args[0]);
+                case "queueBind":
+                    verificarAberto();
+                    ligacoes.add(new Ligacao((String) args[1], (String) args[2], (String) args[0]));
+                    return new AMQImpl.Queue.BindOk();
+                case "basicQos":
+                    // basicQos(prefetchCount), basicQos(prefetchCount, global) ou basicQos(prefetchSize, prefetchCount, global)
+                    synchronized (this) {
+                        prefetch = (Integer) args[args.length == 3 ? 1 : 0];
+                        notifyAll();
+                    }
+                    return null;
+                case "basicPublish":
+                    verificarAberto();
+                    // basicPublish(exchange, routingKey, [mandatory, [immediate,]] props, corpo)
+                    publicar((String) args[0], (String) args[1],
+                            (AMQP.BasicProperties) args[args.length - 2], (byte[]) args[args.length - 1]);
+                    return null;
+                case "basicConsume":
+                    if (args.length != 3 || !(args[2] instanceof Consumer) || (Boolean) args[1]) break;
+                    return consumir((String) args[0], (Consumer) args[2]);
+                case "basicCancel":
+                    synchronized (this) {
+                        consumindo = false;
+                        notifyAll();
+                    }
+                    return null;
+                case "basicAck":
+                    confirmar((Long) args[0], (Boolean) args[1]);
+                    return null;
+                case "basicNack":
+                    if ((Boolean) args[1]) break;
+                    devolver((Long) args[0], (Boolean) args[2]);
+                    return null;
+                default:
+                    break;
+            }
+            return doObjeto(p, metodo, args, "canal em memória " + numero);
+        }
+
+        private AMQP.Queue.DeclareOk declareOk(String fila) {
+            return new AMQImpl.Queue.DeclareOk(fila, prontas(fila), 0);
+        }
+
+        private synchronized void verificarAberto() {
+            if (!aberto) throw new AlreadyClosedException(new ShutdownSignalException(false, true, null, proxy));
+        }
+
+        private String consumir(String fila, Consumer consumidor) throws IOException {
+            LinkedBlockingDeque<MensagemMemoria> mensagens = filas.get(fila);
+            if (mensagens == null) throw new IOException("fila inexistente: " + fila);
+            String tag = "amq.ctag-memoria-" + proximoConsumidor.incrementAndGet();
+            Thread anterior;
+            synchronized (this) {
+                anterior = entrega;
+            }
+            // No cliente real as entregas de um canal saem em série: as do consumo novo vêm depois
+            // das que ainda restavam do cancelado (troca de prefetch em PrefetchAdaptativo)
+            if (anterior != null && anterior != Thread.currentThread()) {
+                try {
+                    anterior.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrompido esperando o consumo anterior", e);
+                }
+            }
+            Thread nova = new Thread(() -> entregar(fila, mensagens, tag, consumidor), "entrega-memoria-" + numero);
+            nova.setDaemon(true);
+            synchronized (this) {
+                verificarAberto();
+                if (consumindo) throw new UnsupportedOperationException("um consumidor por canal");
+                consumindo = true;
+                entrega = nova;
+            }
+            nova.start();
+            return tag;
+        }
+
+        /** Entrega em série enquanto houver crédito de prefetch, até o cancelamento ou o fechamento. */
+        private void entregar(String fila, LinkedBlockingDeque<MensagemMemoria> mensagens, String tag, Consumer consumidor) {
+            try {
+                while (true) {
+                    synchronized (this) {
+                        while (consumindo && prefetch > 0 && pendentes.size() >= prefetch) {
+                            wait();
+                        }
+                        if (!consumindo) break;
+                    }
+                    MensagemMemoria mensagem = mensagens.pollFirst(20, TimeUnit.MILLISECONDS);
+                    if (mensagem == null) continue;
+                    long deliveryTag;
+                    synchronized (this) {
+                        if (!consumindo) {
+                            mensagens.addFirst(mensagem);
+                            break;
+                        }
+                        deliveryTag = ++ultimaTag;
+                        pendentes.put(deliveryTag, new Pendente(fila, mensagem));
+                    }
+                    try {
+                        consumidor.handleDelivery(tag, new Envelope(deliveryTag, mensagem.reentregue, mensagem.exchange, mensagem.routingKey),
+                                mensagem.propriedades, mensagem.corpo);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("AVISO: exceção no consumidor do canal " + numero + ": " + e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            boolean fechado;
+            synchronized (this) {
+                fechado = !aberto;
+            }
+            if (fechado) {
+                consumidor.handleShutdownSignal(tag, new ShutdownSignalException(false, true, null, proxy));
+            } else {
+                consumidor.handleCancelOk(tag);
+            }
+        }
+
+        private void confirmar(long deliveryTag, boolean multiplas) {
+            List<Pendente> confirmadas = new ArrayList<>();
+            synchronized (this) {
+                verificarAberto();
+                if (multiplas) {
+                    NavigableMap<Long, Pendente> ate = pendentes.headMap(deliveryTag, true);
+                    confirmadas.addAll(ate.values());
+                    ate.clear();
+                } else {
+                    Pendente pendente = pendentes.remove(deliveryTag);
+                    // No RabbitMQ, um ack de tag desconhecida fecha o canal com PRECONDITION_FAILED
+                    if (pendente == null) throw new IllegalStateException("ack de tag desconhecida " + deliveryTag
+                            + " no canal " + numero);
+                    confirmadas.add(pendente);
+                }
+                notifyAll();
+            }
+            long agoraNs = System.nanoTime();
+            for (Pendente pendente : confirmadas) {
+                aoConfirmar.confirmada(pendente.fila, pendente.mensagem.publicadaNs, agoraNs);
+            }
+        }
+
+        /** Nack de uma tag: com {@code requeue} a mensagem volta para o início da fila, senão é descartada. */
+        private void devolver(long deliveryTag, boolean requeue) {
+            synchronized (this) {
+                verificarAberto();
+                Pendente pendente = pendentes.remove(deliveryTag);
+                if (pendente == null) throw new IllegalStateException("nack de tag desconhecida " + deliveryTag
+                        + " no canal " + numero);
+                if (requeue) {
+                    pendente.mensagem.reentregue = true;
+                    filas.get(pendente.fila).addFirst(pendente.mensagem);
+                }
+                notifyAll();
+            }
+        }
+
+        /** Fecha o canal e devolve as mensagens sem ack para o início das filas, na ordem original. */
+        void fechar() {
+            synchronized (this) {
+                if (!aberto) return;
+                aberto = false;
+                consumindo = false;
+                for (Pendente pendente : pendentes.descendingMap().values()) {
+                    pendente.mensagem.reentregue = true;
+                    filas.get(pendente.fila).addFirst(pendente.mensagem);
+                }
+                pendentes.clear();
+                notifyAll();
+            }
+            canais.remove(this);
+        }
+    }
+}
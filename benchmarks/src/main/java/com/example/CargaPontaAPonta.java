@@ -0,0 +1,338 @@
+package com.example;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.example.Config.lerConfig;
+import static com.example.Config.lerFlag;
+import static com.example.Config.lerTexto;
+
+/**
+ * Teste de carga reprodutível do pipeline inteiro em um só processo, sem RabbitMQ nem Docker.
+ *
+ * Um produtor publica as imagens de {@code imagens/} como o gerador (mesmo exchange, routing keys e
+ * headers) em um {@link BrokerMemoria}, e os classificadores do classpath consomem com
+ * {@link ConsumidorImagens}, montados como em {@link ServidorConsumidores}, treinando com
+ * {@code imagenstreino/} e gravando as saídas em um diretório temporário. A latência de cada
+ * mensagem vai da publicação ao ack, depois da gravação em disco.
+ *
+ * <pre>RESULTADOS_DIR= SNAPSHOT_MODELO= java -cp benchmarks/target/benchmarks.jar com.example.CargaPontaAPonta</pre>
+ *
+ * Aceita as mesmas variáveis de ambiente dos consumidores ({@code CLASSIFICADORES}, {@code PREFETCH},
+ * {@code LOTE_TAMANHO}, {@code THREADS_VIRTUAIS}...) e mais {@code CARGA_MENSAGENS} (total publicado),
+ * {@code CARGA_AQUECIMENTO} (primeiras mensagens confirmadas fora das estatísticas), {@code CARGA_TAXA}
+ * (mensagens/s; 0 publica tudo de uma vez) e {@code CARGA_RAIZ} (diretório com {@code imagens/} e
+ * {@code imagenstreino/}). As imagens se repetem, então com o cache ligado a maior parte vem dele;
+ * {@code CACHE_ENTRADAS=0} mede o pipeline completo em todas.
+ */
+public final class CargaPontaAPonta {
+
+    private static final String EXCHANGE_NAME = "imagens_exchange";
+
+    private CargaPontaAPonta() {
+    }
+
+    /** Um classificador do classpath com os diretórios do repositório no lugar dos de {@code /app}. */
+    private static final class ClassificadorLocal implements Classificador {
+
+        final Classificador original;
+        final File treino;
+        final File amostras;
+        final File saida;
+
+        ClassificadorLocal(Classificador original, Path raiz, Path saida) {
+            this.original = original;
+            // image-faces, image-times: o mesmo nome em imagenstreino/ e em imagens/
+            String subdiretorio = Paths.get(original.diretorioTreino()).getFileName().toString();
+            this.treino = raiz.resolve("imagenstreino").resolve(subdiretorio).toFile();
+            this.amostras = raiz.resolve("imagens").resolve(subdiretorio).toFile();
+            this.saida = saida.resolve(original.nome()).toFile();
+        }
+
+        /** Routing key publicada pelo produtor, casando com a ligação da fila ({@code face.#} vira {@code face.carga}). */
+        String routingKeyPublicada() {
+            return original.routingKey().replace("#", "carga").replace("*", "carga");
+        }
+
+        @Override
+        public String nome() {
+            return original.nome();
+        }
+
+        @Override
+        public String fila() {
+            return original.fila();
+        }
+
+        @Override
+        public String routingKey() {
+            return original.routingKey();
+        }
+
+        @Override
+        public String diretorioTreino() {
+            return treino.getPath();
+        }
+
+        @Override
+        public String diretorioSaida() {
+            return saida.getPath();
+        }
+
+        @Override
+        public String formatoSaida() {
+            return original.formatoSaida();
+        }
+
+        @Override
+        public Integer rotuloDeTreino(String nomeArquivo) {
+            return original.rotuloDeTreino(nomeArquivo);
+        }
+
+        @Override
+        public String nomeDoRotulo(int rotulo) {
+            return original.nomeDoRotulo(rotulo);
+        }
+
+        @Override
+        public int k(int amostras) {
+            return original.k(amostras);
+        }
+
+        @Override
+        public double[] extrairFeatures(BufferedImage img) {
+            return original.extrairFeatures(img);
+        }
+
+        @Override
+        public double[] extrairFeatures(DecodificadorImagem decodificador) throws IOException {
+            return original.extrairFeatures(decodificador);
+        }
+
+        @Override
+        public String versaoFeatures() {
+            return original.versaoFeatures();
+        }
+
+        @Override
+        public double[][] amostrasFallback() {
+            return original.amostrasFallback();
+        }
+
+        @Override
+        public int[] rotulosFallback() {
+            return original.rotulosFallback();
+        }
+    }
+
+    /** Uma imagem pronta para publicar. */
+    private static final class Imagem {
+        final String routingKey;
+        final String nome;
+        final byte[] corpo;
+
+        Imagem(String routingKey, String nome, byte[] corpo) {
+            this.routingKey = routingKey;
+            this.nome = nome;
+            this.corpo = corpo;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ImageIO.setUseCache(false);
+        Path raiz = Paths.get(lerTexto("CARGA_RAIZ", "."));
+        int total = Math.max(1, lerConfig("CARGA_MENSAGENS", 2000));
+        int aquecimento = Math.max(0, Math.min(total - 1, lerConfig("CARGA_AQUECIMENTO", 200)));
+        int taxa = lerConfig("CARGA_TAXA", 0);
+        Path saida = Files.createTempDirectory("carga-ia-");
+
+        List<ClassificadorLocal> classificadores = new ArrayList<>();
+        for (Classificador classificador : ServidorConsumidores.descobrir(lerTexto("CLASSIFICADORES", ""))) {
+            classificadores.add(new ClassificadorLocal(classificador, raiz, saida));
+        }
+        List<Imagem> imagens = carregarImagens(classificadores);
+        if (imagens.isEmpty()) {
+            throw new IllegalStateException("Nenhuma imagem em " + raiz.toAbsolutePath().resolve("imagens")
+                    + " para os classificadores do classpath (defina CARGA_RAIZ)");
+        }
+
+        // Latência da publicação ao ack (µs), total e por fila, a partir da primeira mensagem depois do aquecimento
+        Map<String, Histogram> porFila = new LinkedHashMap<>();
+        for (ClassificadorLocal classificador : classificadores) {
+            porFila.put(classificador.fila(), new ConcurrentHistogram(3));
+        }
+        Histogram geral = new ConcurrentHistogram(3);
+        AtomicLong confirmadas = new AtomicLong();
+        AtomicLong inicioMedicaoNs = new AtomicLong();
+        AtomicLong ultimaConfirmacaoNs = new AtomicLong();
+        BrokerMemoria broker = new BrokerMemoria((fila, publicadaNs, confirmadaNs) -> {
+            long n = confirmadas.incrementAndGet();
+            ultimaConfirmacaoNs.accumulateAndGet(confirmadaNs, Math::max);
+            if (n == aquecimento) inicioMedicaoNs.set(confirmadaNs);
+            if (n <= aquecimento) return;
+            long micros = Math.max(0, (confirmadaNs - publicadaNs) / 1000);
+            geral.recordValue(micros);
+            porFila.get(fila).recordValue(micros);
+        });
+
+        // Mesma montagem de ServidorConsumidores, com a conexão do broker em memória
+        boolean threadsVirtuais = lerFlag("THREADS_VIRTUAIS", false);
+        ExecutorService execucao = threadsVirtuais
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("entrega-", 0).factory())
+                : null;
+        EscalonadorJusto cpu = threadsVirtuais || classificadores.size() > 1
+                ? new EscalonadorJusto(lerConfig("LIMITE_CPU", Runtime.getRuntime().availableProcessors()))
+                : null;
+        RegistroAssincrono log = new RegistroAssincrono("log-consumidor",
+                lerConfig("FILA_LOG", 8192), lerTexto("NIVEL_LOG", "aviso"), lerConfig("AMOSTRAGEM_LOG", 1));
+        GravadorImagens gravador = new GravadorImagens(
+                lerConfig("GRAVADORES", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                lerConfig("FILA_GRAVACAO", 64),
+                lerConfig("FSYNC_LOTE", 0),
+                log);
+        ScheduledExecutorService agendador = Executors.newScheduledThreadPool(
+                Math.max(1, lerConfig("NUM_CONSUMIDORES", Runtime.getRuntime().availableProcessors())), r -> {
+                    Thread t = new Thread(r, "agendador-consumidor");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        List<ConsumidorImagens> consumidores = new ArrayList<>();
+        for (ClassificadorLocal classificador : classificadores) {
+            ConsumidorImagens consumidor = new ConsumidorImagens(classificador, gravador, log, execucao, cpu);
+            try {
+                consumidor.preparar();
+            } catch (IOException e) {
+                // Os padrões de RESULTADOS_DIR e SNAPSHOT_MODELO ficam em /app, que fora do contêiner não existe
+                throw new IOException("Falha ao preparar " + classificador.nome() + " (" + e
+                        + "); defina RESULTADOS_DIR e SNAPSHOT_MODELO (vazias desligam)", e);
+            }
+            consumidores.add(consumidor);
+        }
+        Connection conexao = broker.conexao();
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.iniciar(conexao, agendador);
+        }
+
+        System.out.println(" [*] Carga: " + total + " mensagens (" + aquecimento + " de aquecimento), "
+                + (taxa > 0 ? taxa + " msg/s" : "sem limite de taxa") + ", " + imagens.size() + " imagens distintas, saídas em " + saida);
+        if (aquecimento == 0) inicioMedicaoNs.set(System.nanoTime());
+        publicar(conexao.createChannel(), imagens, total, taxa);
+
+        // Espera todas as confirmações; sem progresso por um minuto, relata o que chegou
+        long vistas = -1;
+        long semProgressoDesdeNs = System.nanoTime();
+        while (confirmadas.get() < total) {
+            TimeUnit.MILLISECONDS.sleep(100);
+            long agora = confirmadas.get();
+            if (agora != vistas) {
+                vistas = agora;
+                semProgressoDesdeNs = System.nanoTime();
+            } else if (System.nanoTime() - semProgressoDesdeNs > TimeUnit.MINUTES.toNanos(1)) {
+                System.err.println("AVISO: sem confirmações há 1 minuto; " + agora + " de " + total + " confirmadas");
+                break;
+            }
+        }
+
+        relatar(confirmadas.get() - aquecimento, ultimaConfirmacaoNs.get() - inicioMedicaoNs.get(), geral, porFila);
+
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.pararDeConsumir();
+        }
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.aguardarConcluidas(limite);
+        }
+        gravador.encerrar();
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.fechar();
+        }
+        conexao.close();
+        // A recarga do modelo observa os diretórios de treino em threads próprias
+        System.exit(0);
+    }
+
+    /** As imagens de amostra de cada classificador, com a routing key que chega à fila dele. */
+    private static List<Imagem> carregarImagens(List<ClassificadorLocal> classificadores) throws IOException {
+        List<Imagem> imagens = new ArrayList<>();
+        for (ClassificadorLocal classificador : classificadores) {
+            File[] arquivos = classificador.amostras.listFiles((dir, name) ->
+                    name.toLowerCase().endsWith(".png") || name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".jpeg"));
+            if (arquivos == null || arquivos.length == 0) {
+                System.err.println("AVISO: nenhuma imagem de amostra para " + classificador.nome() + " em " + classificador.amostras);
+                continue;
+            }
+            Arrays.sort(arquivos, Comparator.comparing(File::getName));
+            for (File arquivo : arquivos) {
+                imagens.add(new Imagem(classificador.routingKeyPublicada(), arquivo.getName(), Files.readAllBytes(arquivo.toPath())));
+            }
+        }
+        return imagens;
+    }
+
+    /**
+     * Publica as imagens em rodízio, como o gerador. Com taxa, cada mensagem sai no seu instante
+     * agendado, sem esperar o consumo (carga aberta: a latência inclui o tempo na fila).
+     */
+    private static void publicar(Channel channel, List<Imagem> imagens, int total, int taxa) throws IOException {
+        channel.exchangeDeclare(EXCHANGE_NAME, "topic");
+        long inicioNs = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            if (taxa > 0) {
+                long instanteNs = inicioNs + i * 1_000_000_000L / taxa;
+                long esperaNs;
+                while ((esperaNs = instanteNs - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(esperaNs);
+                }
+            }
+            Imagem imagem = imagens.get(i % imagens.size());
+            Map<String, Object> headers = new HashMap<>();
+            headers.put("filename", imagem.nome);
+            headers.put("message_id", "carga-" + i);
+            headers.put(Metricas.HEADER_PUBLICADO_EM, Metricas.agoraEpocaUs());
+            AMQP.BasicProperties props = new AMQP.BasicProperties.Builder().headers(headers).build();
+            channel.basicPublish(EXCHANGE_NAME, imagem.routingKey, props, imagem.corpo);
+        }
+    }
+
+    private static void relatar(long mensagens, long duracaoNs, Histogram geral, Map<String, Histogram> porFila) {
+        double segundos = duracaoNs / 1e9;
+        System.out.printf("%n %d mensagens medidas em %.2f s: %.1f msg/s%n", mensagens, segundos,
+                segundos > 0 ? mensagens / segundos : 0.0);
+        System.out.printf(" %-14s %10s %10s %10s %10s %10s%n", "latência (ms)", "mensagens", "p50", "p90", "p99", "máx");
+        linha("total", geral);
+        for (Map.Entry<String, Histogram> fila : porFila.entrySet()) {
+            linha(fila.getKey(), fila.getValue());
+        }
+    }
+
+    private static void linha(String nome, Histogram histograma) {
+        System.out.printf(" %-14s %10d %10.1f %10.1f %10.1f %10.1f%n", nome, histograma.getTotalCount(),
+                histograma.getValueAtPercentile(50) / 1000.0, histograma.getValueAtPercentile(90) / 1000.0,
+                histograma.getValueAtPercentile(99) / 1000.0, histograma.getMaxValue() / 1000.0);
+    }
+}
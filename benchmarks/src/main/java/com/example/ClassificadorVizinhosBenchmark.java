@@ -0,0 +1,79 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latência de uma predição em cada backend de {@link ClassificadorVizinhos}, com 1 mil, 100 mil e
+ * 1 milhão de amostras de treino de 6 dimensões (o tamanho dos vetores de faces e de times):
+ *
+ * <pre>java -jar benchmarks/target/benchmarks.jar ClassificadorVizinhos</pre>
+ *
+ * As amostras são uniformes em [0, 1), com 5 rótulos, e as consultas percorrem 1024 vetores
+ * sorteados do mesmo jeito para que nenhum backend se beneficie de uma consulta repetida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ClassificadorVizinhosBenchmark {
+
+    private static final int DIMENSAO = 6;
+    private static final int CONSULTAS = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int amostras;
+
+    @Param({"smile", "kdtree", "forca-bruta"})
+    public String backend;
+
+    @Param({"3"})
+    public int k;
+
+    private ClassificadorVizinhos classificador;
+    private double[][] consultas;
+    private int proxima;
+
+    @Setup
+    public void treinar() {
+        Random random = new Random(42);
+        double[][] x = vetores(random, amostras);
+        int[] y = new int[amostras];
+        for (int i = 0; i < amostras; i++) {
+            y[i] = random.nextInt(5);
+        }
+        classificador = ClassificadorVizinhos.treinar(backend, x, y, k);
+        consultas = vetores(random, CONSULTAS);
+    }
+
+    @Benchmark
+    public int prever() {
+        double[] consulta = consultas[proxima];
+        proxima = (proxima + 1) & (CONSULTAS - 1);
+        return classificador.prever(consulta);
+    }
+
+    private static double[][] vetores(Random random, int quantidade) {
+        double[][] vetores = new double[quantidade][DIMENSAO];
+        for (double[] v : vetores) {
+            for (int j = 0; j < DIMENSAO; j++) {
+                v[j] = random.nextDouble();
+            }
+        }
+        return vetores;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Custo de cada etapa de {@link ConsumidorImagens} por imagem: decodificação, extração de features
+ * de faces e de times (da imagem inteira, com {@code ANOTAR_IMAGENS=true}, e pelo decodificador, que
+ * lê só o necessário), anotação, codificação da saída e inserção do rótulo nos metadados.
+ *
+ * <pre>java -jar benchmarks/target/benchmarks.jar EtapasPipeline -p imagem=sintetica-3840x2160.jpg</pre>
+ *
+ * As imagens reais são lidas de {@code imagens/image-faces} e {@code imagens/image-times} (ou dos
+ * mesmos subdiretórios da propriedade {@code imagens.raiz}); as sintéticas ({@code sintetica-LxA.formato})
+ * são os blocos coloridos de {@link ExtratorCorDominanteBenchmark}, até 4K. A predição do KNN não
+ * depende do tamanho da imagem e fica em {@link ClassificadorVizinhosBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EtapasPipelineBenchmark {
+
+    private static final Pattern SINTETICA = Pattern.compile("sintetica-(\\d+)x(\\d+)\\.(\\w+)");
+
+    @Param({"feliz1.jpg", "feliz3.png", "flamengo.png",
+            "sintetica-640x480.jpg", "sintetica-1920x1080.jpg", "sintetica-3840x2160.jpg", "sintetica-3840x2160.png"})
+    public String imagem;
+
+    private final ClassificadorFaces faces = new ClassificadorFaces();
+    private final ClassificadorTimes times = new ClassificadorTimes();
+
+    private byte[] bytes;
+    private BufferedImage img;
+    // Cópia sem alfa: o escritor JPEG do ImageIO não grava imagens com transparência
+    private BufferedImage imgRgb;
+
+    @Setup
+    public void carregar() throws IOException {
+        ImageIO.setUseCache(false);
+        Matcher sintetica = SINTETICA.matcher(imagem);
+        if (sintetica.matches()) {
+            BufferedImage gerada = ExtratorCorDominanteBenchmark.imagemSintetica(
+                    Integer.parseInt(sintetica.group(1)), Integer.parseInt(sintetica.group(2)));
+            String formato = sintetica.group(3);
+            bytes = codificar(formato.equals("png") ? gerada : semAlfa(gerada), formato);
+        } else {
+            bytes = Files.readAllBytes(localizar(imagem).toPath());
+        }
+        img = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (img == null) throw new IOException("Nenhum leitor reconheceu " + imagem);
+        imgRgb = semAlfa(img);
+    }
+
+    @Benchmark
+    public BufferedImage decodificar() throws IOException {
+        try (DecodificadorImagem decodificador = DecodificadorImagem.abrir(bytes)) {
+            return decodificador.lerCompleta();
+        }
+    }
+
+    @Benchmark
+    public double[] featuresFaces() {
+        return faces.extrairFeatures(img);
+    }
+
+    @Benchmark
+    public double[] featuresFacesDoDecodificador() throws IOException {
+        try (DecodificadorImagem decodificador = DecodificadorImagem.abrir(bytes)) {
+            return faces.extrairFeatures(decodificador);
+        }
+    }
+
+    @Benchmark
+    public double[] featuresTimes() {
+        return times.extrairFeatures(img);
+    }
+
+    @Benchmark
+    public double[] featuresTimesDoDecodificador() throws IOException {
+        try (DecodificadorImagem decodificador = DecodificadorImagem.abrir(bytes)) {
+            return times.extrairFeatures(decodificador);
+        }
+    }
+
+    /** Redesenha o mesmo texto no mesmo lugar a cada chamada; o custo é o mesmo de uma imagem nova. */
+    @Benchmark
+    public BufferedImage anotar() {
+        return ConsumidorImagens.desenharTextoNaImagem(img, "Borussia Dortmund");
+    }
+
+    /** Saída das faces. */
+    @Benchmark
+    public byte[] codificarJpg() throws IOException {
+        return codificar(imgRgb, "jpg");
+    }
+
+    /** Saída dos times. */
+    @Benchmark
+    public byte[] codificarPng() throws IOException {
+        return codificar(img, "png");
+    }
+
+    /** Saída sem anotação ({@code ROTULO_SAIDA=metadados}): os bytes recebidos com um chunk de texto. */
+    @Benchmark
+    public ByteBuffer[] metadados() {
+        return MetadadosImagem.comTexto(bytes, "classificacao", "Borussia Dortmund");
+    }
+
+    private static File localizar(String nome) throws IOException {
+        File raiz = new File(System.getProperty("imagens.raiz", "imagens"));
+        for (String subdiretorio : new String[]{"image-faces", "image-times"}) {
+            File arquivo = new File(new File(raiz, subdiretorio), nome);
+            if (arquivo.isFile()) return arquivo;
+        }
+        throw new IOException("Não foi possível encontrar " + nome + " em " + raiz.getAbsolutePath());
+    }
+
+    private static byte[] codificar(BufferedImage img, String formato) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, formato, saida)) throw new IOException("Nenhum escritor para " + formato);
+        return saida.toByteArray();
+    }
+
+    private static BufferedImage semAlfa(BufferedImage img) {
+        if (!img.getColorModel().hasAlpha()) return img;
+        BufferedImage rgb = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return rgb;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara o extrator de cor dominante original (um {@code Color} e um {@code float[]} por pixel)
+ * com {@link ExtratorCorDominante}. Rode com {@code -prof gc} para ver a diferença de alocação:
+ *
+ * <pre>java -jar benchmarks/target/benchmarks.jar ExtratorCorDominante -prof gc</pre>
+ *
+ * Os escudos são lidos de {@code imagens/image-times} (ou da propriedade {@code imagens.dir}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtratorCorDominanteBenchmark {
+
+    @Param({"flamengo.png", "borussia-dortmund.png", "vfl-wolfsburg.png", "sintetica-1000x1000"})
+    public String imagem;
+
+    private BufferedImage img;
+
+    @Setup
+    public void carregar() throws IOException {
+        if (imagem.startsWith("sintetica-")) {
+            img = imagemSintetica(1000, 1000);
+        } else {
+            File dir = new File(System.getProperty("imagens.dir", "imagens/image-times"));
+            img = ImageIO.read(new File(dir, imagem));
+            if (img == null) throw new IOException("Não foi possível ler " + imagem + " em " + dir.getAbsolutePath());
+        }
+    }
+
+    @Benchmark
+    public double[] original() {
+        return extrairFeatureDeCorDominanteOriginal(img);
+    }
+
+    @Benchmark
+    public double[] semAlocacao() {
+        return ExtratorCorDominante.extrair(img);
+    }
+
+    /**
+     * Blocos coloridos aleatórios em RGBA, parecido com um escudo grande sem paleta.
+     */
+    static BufferedImage imagemSintetica(int largura, int altura) {
+        BufferedImage img = new BufferedImage(largura, altura, BufferedImage.TYPE_4BYTE_ABGR);
+        Random random = new Random(42);
+        for (int y = 0; y < altura; y += 20) {
+            for (int x = 0; x < largura; x += 20) {
+                int rgb = 0xFF000000 | random.nextInt(0x1000000);
+                for (int dy = 0; dy < 20 && y + dy < altura; dy++) {
+                    for (int dx = 0; dx < 20 && x + dx < largura; dx++) {
+                        img.setRGB(x + dx, y + dy, rgb);
+                    }
+                }
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Cópia do método original de {@code ConsumidorTime}, mantida como linha de base.
+     */
+    static double[] extrairFeatureDeCorDominanteOriginal(BufferedImage img) {
+        if (img == null) return new double[]{0,0,0,0,0};
+
+        int redStrongCount = 0, redDarkCount = 0, yellowCount = 0, blueCount = 0, darkGreenCount = 0, lightGreenCount = 0;
+
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                Color pixel = new Color(img.getRGB(x, y), true);
+                if (pixel.getAlpha() < 100) continue;
+
+                int r = pixel.getRed();
+                int g = pixel.getGreen();
+                int b = pixel.getBlue();
+
+                if ((r > 220 && g > 220 && b > 220) || (r < 40 && g < 40 && b < 40)) continue;
+
+                float[] hsb = Color.RGBtoHSB(r, g, b, null);
+                float hue = hsb[0];
+                float saturation = hsb[1];
+                float brightness = hsb[2];
+
+                if (saturation > 0.4) {
+                    if ((hue >= 0.0 && hue < 0.05) || (hue > 0.95)) {
+                        if (brightness > 0.6) redStrongCount++;
+                        else redDarkCount++;
+                    } else if (hue >= 0.14 && hue < 0.19) {
+                        yellowCount++;
+                    } else if (hue >= 0.58 && hue < 0.7) {
+                        blueCount++;
+                    } else if (hue >= 0.25 && hue < 0.45) {
+                        if (brightness > 0.6) lightGreenCount++;
+                        else darkGreenCount++;
+                    }
+                }
+            }
+        }
+
+        int maxCount = Math.max(
+            redStrongCount,
+            Math.max(redDarkCount, Math.max(yellowCount, Math.max(blueCount, Math.max(darkGreenCount, lightGreenCount))))
+        );
+
+        if (maxCount == 0) return new double[]{0,0,0,0,0,0};
+        if (maxCount == redStrongCount) return new double[]{1,0,0,0,0,0};
+        if (maxCount == redDarkCount)   return new double[]{0,1,0,0,0,0};
+        if (maxCount == yellowCount)    return new double[]{0,0,1,0,0,0};
+        if (maxCount == blueCount)      return new double[]{0,0,0,1,0,0};
+        if (maxCount == darkGreenCount) return new double[]{0,0,0,0,1,0};
+        return new double[]{0,0,0,0,0,1};
+    }
+}
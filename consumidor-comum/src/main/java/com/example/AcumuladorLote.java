@@ -0,0 +1,77 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Agrupa itens (entregas do RabbitMQ) em lotes de até {@code tamanho}, esperando no máximo
+ * {@code esperaMs} depois do primeiro item antes de liberar um lote incompleto.
+ *
+ * Um lote cheio é processado na própria thread que entregou o último item; um lote liberado por
+ * tempo é processado em uma thread do agendador. A trava é um {@link ReentrantLock}: as entregas
+ * chegam em threads virtuais quando o consumidor as usa, e um monitor prenderia a thread portadora.
+ */
+public final class AcumuladorLote<T> {
+
+    private final int tamanho;
+    private final long esperaMs;
+    private final ScheduledExecutorService agendador;
+    private final Consumer<List<T>> processar;
+    private final ReentrantLock trava = new ReentrantLock();
+
+    private List<T> atual;
+    private ScheduledFuture<?> prazo;
+
+    public AcumuladorLote(int tamanho, long esperaMs, ScheduledExecutorService agendador, Consumer<List<T>> processar) {
+        this.tamanho = Math.max(1, tamanho);
+        this.esperaMs = Math.max(0, esperaMs);
+        this.agendador = agendador;
+        this.processar = processar;
+        this.atual = new ArrayList<>(this.tamanho);
+    }
+
+    public void adicionar(T item) {
+        List<T> cheio = null;
+        trava.lock();
+        try {
+            atual.add(item);
+            if (atual.size() >= tamanho) {
+                cheio = retirar();
+            } else if (atual.size() == 1) {
+                prazo = agendador.schedule(this::liberarPorTempo, esperaMs, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            trava.unlock();
+        }
+        if (cheio != null) {
+            processar.accept(cheio);
+        }
+    }
+
+    private void liberarPorTempo() {
+        List<T> lote;
+        trava.lock();
+        try {
+            if (atual.isEmpty()) return;
+            lote = retirar();
+        } finally {
+            trava.unlock();
+        }
+        processar.accept(lote);
+    }
+
+    private List<T> retirar() {
+        if (prazo != null) {
+            prazo.cancel(false);
+            prazo = null;
+        }
+        List<T> lote = atual;
+        atual = new ArrayList<>(tamanho);
+        return lote;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU de resultados indexado pelo xxHash64 do corpo da mensagem.
+ *
+ * Cada entrada guarda a predição e, opcionalmente, a imagem anotada já codificada, para que uma
+ * imagem repetida não seja decodificada, classificada nem recodificada de novo. O número de
+ * entradas e o total de bytes das saídas guardadas são limitados.
+ *
+ * Os resultados pertencem a uma versão do modelo: quando o modelo muda o cache é esvaziado e
+ * resultados calculados com a versão anterior que cheguem depois disso são ignorados.
+ *
+ * Se um arquivo for configurado, as predições (não as imagens) também são gravadas em um anel
+ * mapeado em memória e recarregadas na próxima inicialização, desde que o modelo seja o mesmo.
+ */
+public class CacheResultados {
+
+    private static final XXHash64 XXHASH = XXHashFactory.fastestInstance().hash64();
+
+    private static final int MAGICO = 0x43414348; // "CACH"
+    private static final int CABECALHO = 24;      // mágico, capacidade, versão do modelo, cursor
+    private static final int REGISTRO = 16;       // hash, tamanho, rótulo
+
+    public static final class Entrada {
+        public final int tamanho;
+        public final int rotulo;
+        volatile byte[] saida;
+
+        Entrada(int tamanho, int rotulo) {
+            this.tamanho = tamanho;
+            this.rotulo = rotulo;
+        }
+
+        /** Imagem anotada já codificada, ou null se ainda não foi gerada ou foi descartada. */
+        public byte[] saida() {
+            return saida;
+        }
+    }
+
+    private final int maxEntradas;
+    private final long maxBytesSaida;
+    private final LinkedHashMap<Long, Entrada> mapa;
+    private long bytesSaida;
+    private long versaoModelo;
+
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong faltas = new AtomicLong();
+    private final AtomicLong remocoes = new AtomicLong();
+
+    private MappedByteBuffer anel;
+
+    /**
+     * @param maxEntradas    número máximo de resultados; 0 desliga o cache
+     * @param maxBytesSaida  total de bytes de imagens codificadas mantidas; 0 guarda só as predições
+     */
+    public CacheResultados(int maxEntradas, long maxBytesSaida) {
+        this.maxEntradas = Math.max(0, maxEntradas);
+        this.maxBytesSaida = Math.max(0, maxBytesSaida);
+        this.mapa = new LinkedHashMap<Long, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entrada> maisAntiga) {
+                if (size() <= CacheResultados.this.maxEntradas) return false;
+                descontarSaida(maisAntiga.getValue());
+                remocoes.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    public static long hash(byte[] dados) {
+        return XXHASH.hash(dados, 0, dados.length, 0);
+    }
+
+    /** Mesmo hash de {@link #hash(byte[])}, sobre o conteúdo do buffer (posição até o limite). */
+    public static long hash(ByteBuffer dados) {
+        return XXHASH.hash(dados, dados.position(), dados.remaining(), 0);
+    }
+
+    /**
+     * Identifica um modelo treinado pelas suas amostras, rótulos e k. Resultados persistidos
+     * com outra versão são descartados ao abrir o arquivo.
+     */
+    public static long versaoModelo(double[][] features, int[] labels, int k) {
+        int dimensao = features.length > 0 ? features[0].length : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + features.length * (dimensao * 8 + 4));
+        buffer.putInt(k).putInt(dimensao);
+        for (int i = 0; i < features.length; i++) {
+            for (double v : features[i]) buffer.putDouble(v);
+            buffer.putInt(labels[i]);
+        }
+        return XXHASH.hash(buffer.array(), 0, buffer.position(), 0);
+    }
+
+    public boolean ativo() {
+        return maxEntradas > 0;
+    }
+
+    public synchronized Entrada buscar(long hash, int tamanho) {
+        if (!ativo()) return null;
+        Entrada entrada = mapa.get(hash);
+        if (entrada == null || entrada.tamanho != tamanho) {
+            faltas.incrementAndGet();
+            return null;
+        }
+        acertos.incrementAndGet();
+        return entrada;
+    }
+
+    public synchronized void guardar(long hash, int tamanho, int rotulo, long versao) {
+        if (!ativo() || versao != versaoModelo) return;
+        Entrada anterior = mapa.put(hash, new Entrada(tamanho, rotulo));
+        if (anterior != null) descontarSaida(anterior);
+        persistir(hash, tamanho, rotulo);
+    }
+
+    /**
+     * Anexa a imagem anotada codificada a um resultado já guardado. Se o limite de bytes for
+     * ultrapassado, as saídas das entradas menos usadas são descartadas (a predição continua).
+     */
+    public synchronized void guardarSaida(long hash, int tamanho, byte[] saida, long versao) {
+        if (!ativo() || versao != versaoModelo || maxBytesSaida == 0 || saida.length > maxBytesSaida) return;
+        Entrada entrada = mapa.get(hash);
+        if (entrada == null || entrada.tamanho != tamanho || entrada.saida != null) return;
+        entrada.saida = saida;
+        bytesSaida += saida.length;
+
+        Iterator<Entrada> maisAntigas = mapa.values().iterator();
+        while (bytesSaida > maxBytesSaida && maisAntigas.hasNext()) {
+            Entrada candidata = maisAntigas.next();
+            if (candidata != entrada) descontarSaida(candidata);
+        }
+    }
+
+    /** Esvazia o cache e passa a aceitar apenas resultados da nova versão do modelo. */
+    public synchronized void limpar(long novaVersaoModelo) {
+        mapa.clear();
+        bytesSaida = 0;
+        versaoModelo = novaVersaoModelo;
+        if (anel != null) {
+            anel.putLong(8, novaVersaoModelo);
+            anel.putLong(16, 0);
+        }
+    }
+
+    /**
+     * Mapeia o arquivo de persistência e recarrega as predições gravadas pelo mesmo modelo.
+     */
+    public synchronized void abrirArquivo(Path caminho, long versaoModelo) throws IOException {
+        if (!ativo()) return;
+        this.versaoModelo = versaoModelo;
+        long tamanhoArquivo = CABECALHO + (long) maxEntradas * REGISTRO;
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            anel = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoArquivo);
+        }
+
+        if (anel.getInt(0) != MAGICO || anel.getInt(4) != maxEntradas || anel.getLong(8) != versaoModelo) {
+            anel.putInt(0, MAGICO).putInt(4, maxEntradas).putLong(8, versaoModelo).putLong(16, 0);
+            return;
+        }
+
+        long cursor = anel.getLong(16);
+        long inicio = Math.max(0, cursor - maxEntradas);
+        for (long i = inicio; i < cursor; i++) {
+            int pos = posicao(i);
+            mapa.put(anel.getLong(pos), new Entrada(anel.getInt(pos + 8), anel.getInt(pos + 12)));
+        }
+        System.out.println(" [cache] " + mapa.size() + " resultado(s) recarregado(s) de " + caminho);
+    }
+
+    /**
+     * Força o anel de persistência para o disco e o solta; as predições seguintes ficam só na memória.
+     */
+    public synchronized void fechar() {
+        if (anel == null) return;
+        anel.force();
+        anel = null;
+    }
+
+    public long acertos() {
+        return acertos.get();
+    }
+
+    public long faltas() {
+        return faltas.get();
+    }
+
+    public long remocoes() {
+        return remocoes.get();
+    }
+
+    public synchronized String estatisticas() {
+        return "acertos=" + acertos.get() + " faltas=" + faltas.get() + " remocoes=" + remocoes.get()
+                + " entradas=" + mapa.size() + " bytesSaida=" + bytesSaida;
+    }
+
+    private void descontarSaida(Entrada entrada) {
+        byte[] saida = entrada.saida;
+        if (saida != null) {
+            bytesSaida -= saida.length;
+            entrada.saida = null;
+        }
+    }
+
+    private void persistir(long hash, int tamanho, int rotulo) {
+        if (anel == null) return;
+        long cursor = anel.getLong(16);
+        int pos = posicao(cursor);
+        anel.putLong(pos, hash).putInt(pos + 8, tamanho).putInt(pos + 12, rotulo);
+        anel.putLong(16, cursor + 1);
+    }
+
+    private int posicao(long indice) {
+        return CABECALHO + (int) (indice % maxEntradas) * REGISTRO;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.AlreadyClosedException;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Um canal consumindo a fila de um classificador, que pode ser drenado sem devolver mensagens ao broker.
+ *
+ * A drenagem cancela o consumo ({@code basicCancel}), espera o {@code CancelOk} (que o cliente
+ * entrega depois de todas as mensagens já recebidas pelo canal) e então espera até que cada
+ * mensagem entregue tenha sido confirmada, antes de fechar o canal. Nada que estava no prefetch
+ * é reentregue a outro consumidor, seja na redução da escala ou no desligamento do processo.
+ *
+ * O prefetch só vale para consumos iniciados depois do {@code basicQos} ({@code global=false}), então
+ * {@link #trocarPrefetch(int)} cancela e refaz o consumo no mesmo canal; as mensagens já entregues
+ * continuam presas ao canal e são confirmadas normalmente.
+ *
+ * A contagem usa {@link ReentrantLock} e {@link Condition}, como {@link ConfirmacaoOrdenada}: quem
+ * conclui as mensagens são threads virtuais, que não devem prender a portadora num monitor.
+ */
+final class CanalConsumidor extends DefaultConsumer {
+
+    private final CountDownLatch cancelado = new CountDownLatch(1);
+    private final RegistroAssincrono log;
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Condition semPendentes = trava.newCondition();
+    // Serializa as trocas de prefetch com o cancelamento definitivo
+    private final ReentrantLock assinatura = new ReentrantLock();
+    private Consumer<Delivery> aoEntregar;
+    private String fila;
+    // Entregues e ainda não confirmadas
+    private int emAndamento;
+    private volatile String consumerTag;
+    private volatile int prefetch;
+    // Tag do consumo cujo CancelOk libera a drenagem; os das trocas de prefetch não contam
+    private volatile String tagCancelada;
+    private boolean cancelando;
+
+    CanalConsumidor(Channel canal, RegistroAssincrono log) {
+        super(canal);
+        this.log = log;
+    }
+
+    /**
+     * @param prefetch    {@code basicQos} do canal
+     * @param aoEntregar  processa a mensagem e, ao confirmá-la, chama {@link #concluida()}
+     */
+    void consumir(String fila, int prefetch, Consumer<Delivery> aoEntregar) throws IOException {
+        this.fila = fila;
+        this.aoEntregar = aoEntregar;
+        getChannel().basicQos(prefetch);
+        this.prefetch = prefetch;
+        consumerTag = getChannel().basicConsume(fila, false, this);
+    }
+
+    int prefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Refaz o consumo com outro prefetch. Entre o cancelamento e o novo {@code basicConsume} o canal
+     * só deixa de receber mensagens novas; as em andamento seguem até o ack.
+     *
+     * @return false se o canal já está sendo drenado
+     */
+    boolean trocarPrefetch(int novo) throws IOException {
+        assinatura.lock();
+        try {
+            if (cancelando) return false;
+            Channel canal = getChannel();
+            canal.basicCancel(consumerTag);
+            canal.basicQos(novo);
+            prefetch = novo;
+            consumerTag = canal.basicConsume(fila, false, this);
+            return true;
+        } finally {
+            assinatura.unlock();
+        }
+    }
+
+    @Override
+    public void handleDelivery(String tag, Envelope envelope, AMQP.BasicProperties propriedades, byte[] corpo) {
+        trava.lock();
+        try {
+            emAndamento++;
+        } finally {
+            trava.unlock();
+        }
+        aoEntregar.accept(new Delivery(envelope, propriedades, corpo));
+    }
+
+    /** Uma mensagem deste canal foi confirmada (ou descartada com ack). */
+    void concluida() {
+        trava.lock();
+        try {
+            emAndamento--;
+            if (emAndamento == 0) semPendentes.signalAll();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    @Override
+    public void handleCancelOk(String tag) {
+        if (tag.equals(tagCancelada)) cancelado.countDown();
+    }
+
+    @Override
+    public void handleCancel(String tag) {
+        // Cancelado pelo broker (fila apagada, por exemplo)
+        cancelado.countDown();
+    }
+
+    @Override
+    public void handleShutdownSignal(String tag, ShutdownSignalException sinal) {
+        cancelado.countDown();
+    }
+
+    /** Para de receber mensagens; as já entregues continuam sendo processadas. */
+    void cancelar() {
+        Channel canal = getChannel();
+        assinatura.lock();
+        try {
+            cancelando = true;
+            tagCancelada = consumerTag;
+            if (canal.isOpen() && consumerTag != null) {
+                canal.basicCancel(consumerTag);
+            } else {
+                cancelado.countDown();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.aviso("falha ao cancelar o consumo: " + e.getMessage());
+            cancelado.countDown();
+        } finally {
+            assinatura.unlock();
+        }
+    }
+
+    /** {@link #cancelar()} seguido de {@link #aguardarEFechar}. */
+    boolean drenar(long prazoMs) throws InterruptedException {
+        cancelar();
+        return aguardarEFechar(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prazoMs));
+    }
+
+    /**
+     * Espera, até o instante {@code limite} ({@link System#nanoTime()}), que as mensagens em andamento
+     * sejam confirmadas e fecha o canal.
+     *
+     * Pode ser chamado por duas threads ao mesmo tempo (a drenagem da escala e o desligamento);
+     * a que chegar por último encontra o canal já fechado.
+     *
+     * @return false se o prazo acabou antes; as mensagens ainda sem ack voltam para a fila quando o canal fecha
+     */
+    boolean aguardarEFechar(long limite) throws InterruptedException {
+        Channel canal = getChannel();
+        boolean completo = cancelado.await(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+        trava.lock();
+        try {
+            long restante = limite - System.nanoTime();
+            while (emAndamento > 0 && restante > 0) {
+                restante = semPendentes.awaitNanos(restante);
+            }
+            completo &= emAndamento == 0;
+        } finally {
+            trava.unlock();
+        }
+        try {
+            if (canal.isOpen()) canal.close();
+        } catch (AlreadyClosedException e) {
+            // fechado pela outra espera
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            log.aviso("falha ao fechar o canal: " + e.getMessage());
+        }
+        return completo;
+    }
+}
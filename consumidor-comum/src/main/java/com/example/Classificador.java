@@ -0,0 +1,63 @@
+package com.example;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Plugin de classificação hospedado por {@link ServidorConsumidores}.
+ *
+ * Cada implementação é descoberta com {@link java.util.ServiceLoader} (arquivo
+ * {@code META-INF/services/com.example.Classificador}) e só descreve o que muda entre os tipos de
+ * imagem: fila e routing key, diretórios, rótulos e extração de features. Consumo, decodificação,
+ * cache, lotes, treino, recarga e gravação ficam em {@link ConsumidorImagens}.
+ */
+public interface Classificador {
+
+    /** Nome curto ({@code faces}, {@code times}): rótulo das métricas e prefixo das variáveis de ambiente. */
+    String nome();
+
+    /** Fila durável consumida, ligada ao exchange {@code imagens_exchange}. */
+    String fila();
+
+    String routingKey();
+
+    String diretorioTreino();
+
+    String diretorioSaida();
+
+    /** Formato ({@code ImageIO}) em que a imagem anotada é gravada. */
+    String formatoSaida();
+
+    /** Rótulo de uma imagem de treino a partir do nome do arquivo, ou null para ignorá-la. */
+    Integer rotuloDeTreino(String nomeArquivo);
+
+    /** Texto anotado na imagem e registrado no log para um rótulo previsto. */
+    String nomeDoRotulo(int rotulo);
+
+    /** Vizinhos usados pelo KNN com {@code amostras} imagens de treino. */
+    int k(int amostras);
+
+    double[] extrairFeatures(BufferedImage img);
+
+    /**
+     * Features usadas quando a imagem não é anotada ({@code ANOTAR_IMAGENS=false}), lendo do
+     * decodificador só o necessário. O padrão decodifica a imagem inteira.
+     */
+    default double[] extrairFeatures(DecodificadorImagem decodificador) throws IOException {
+        return extrairFeatures(decodificador.lerCompleta());
+    }
+
+    /**
+     * Identifica o extrator e os parâmetros que mudam as features (por exemplo, a subamostragem).
+     * Entra na impressão do snapshot do modelo: mude o valor sempre que a mesma imagem passar a
+     * gerar outro vetor, para que um snapshot antigo não seja reaproveitado.
+     */
+    default String versaoFeatures() {
+        return "1";
+    }
+
+    /** Amostras do modelo usado quando o diretório de treino não tem imagens suficientes. */
+    double[][] amostrasFallback();
+
+    int[] rotulosFallback();
+}
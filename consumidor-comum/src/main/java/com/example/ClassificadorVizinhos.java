@@ -0,0 +1,79 @@
+package com.example;
+
+import smile.classification.KNN;
+
+import java.util.Arrays;
+
+/**
+ * Classificador por k vizinhos mais próximos (distância euclidiana, voto por maioria).
+ *
+ * Há três implementações, escolhidas pela configuração {@code BACKEND_KNN}:
+ * <ul>
+ *   <li>{@code smile}: o {@code KNN.fit} do Smile, como antes;</li>
+ *   <li>{@code forca-bruta}: varredura de um único {@code double[]} contíguo ({@link VizinhosForcaBruta});</li>
+ *   <li>{@code kdtree}: árvore k-d sobre o mesmo arranjo plano ({@link VizinhosKdTree});</li>
+ *   <li>{@code auto}: força bruta para conjuntos pequenos ou de dimensão alta, árvore k-d nos demais.</li>
+ * </ul>
+ * Empates na votação ficam com o menor rótulo, como no Smile.
+ */
+@FunctionalInterface
+public interface ClassificadorVizinhos {
+
+    /** Até este número de amostras a varredura linear é mais rápida que descer a árvore. */
+    int LIMITE_FORCA_BRUTA = 256;
+    /** Acima desta dimensão a árvore k-d poda pouco e deixa de compensar. */
+    int DIMENSAO_MAXIMA_KDTREE = 16;
+
+    int prever(double[] x);
+
+    /** Classifica vários vetores de uma vez; por padrão, um {@link #prever} por vetor. */
+    default int[] preverLote(double[][] xs) {
+        int[] predicoes = new int[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            predicoes[i] = prever(xs[i]);
+        }
+        return predicoes;
+    }
+
+    /**
+     * Como {@link #preverLote(double[][])}, preenchendo também, para cada vetor, a fração dos k
+     * vizinhos com o rótulo previsto e a distância euclidiana ao vizinho mais próximo. Backends que
+     * não expõem os vizinhos (o Smile) deixam as duas em NaN.
+     */
+    default int[] preverLote(double[][] xs, float[] confiancas, float[] distancias) {
+        Arrays.fill(confiancas, Float.NaN);
+        Arrays.fill(distancias, Float.NaN);
+        return preverLote(xs);
+    }
+
+    /**
+     * Resolve {@code auto} (ou um nome desconhecido) para o backend concreto usado com n amostras de dimensão d.
+     */
+    static String escolherBackend(String backend, int n, int dimensao) {
+        String nome = backend == null ? "auto" : backend.trim().toLowerCase();
+        switch (nome) {
+            case "smile":
+            case "kdtree":
+            case "forca-bruta":
+                return nome;
+            case "auto":
+            case "":
+                break;
+            default:
+                System.err.println("AVISO: BACKEND_KNN desconhecido ('" + backend + "'). Usando auto.");
+        }
+        return n <= LIMITE_FORCA_BRUTA || dimensao > DIMENSAO_MAXIMA_KDTREE ? "forca-bruta" : "kdtree";
+    }
+
+    static ClassificadorVizinhos treinar(String backend, double[][] x, int[] y, int k) {
+        int dimensao = x.length > 0 ? x[0].length : 0;
+        switch (escolherBackend(backend, x.length, dimensao)) {
+            case "smile":
+                return KNN.fit(x, y, k)::predict;
+            case "kdtree":
+                return new VizinhosKdTree(x, y, k);
+            default:
+                return new VizinhosForcaBruta(x, y, k);
+        }
+    }
+}
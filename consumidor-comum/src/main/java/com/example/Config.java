@@ -0,0 +1,47 @@
+package com.example;
+
+/**
+ * Leitura das configurações das variáveis de ambiente.
+ *
+ * Com vários classificadores na mesma JVM, cada um pode ter seu próprio valor com o nome do
+ * classificador como prefixo ({@code FACES_PREFETCH}, {@code TIMES_SNAPSHOT_MODELO}); sem o
+ * prefixo vale a variável comum.
+ */
+public final class Config {
+
+    private Config() {
+    }
+
+    /**
+     * Nome da variável com o prefixo do classificador, se ela estiver definida; senão o nome comum.
+     */
+    public static String variavel(String prefixo, String nome) {
+        String prefixada = prefixo.toUpperCase() + "_" + nome;
+        return System.getenv(prefixada) != null ? prefixada : nome;
+    }
+
+    /**
+     * Lê uma configuração inteira das variáveis de ambiente, usando o valor padrão quando ausente ou inválida.
+     */
+    public static int lerConfig(String nome, int padrao) {
+        String valor = System.getenv(nome);
+        if (valor == null || valor.isBlank()) return padrao;
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("AVISO: valor inválido para " + nome + " ('" + valor + "'). Usando " + padrao + ".");
+            return padrao;
+        }
+    }
+
+    public static String lerTexto(String nome, String padrao) {
+        String valor = System.getenv(nome);
+        return valor == null ? padrao : valor.trim();
+    }
+
+    public static boolean lerFlag(String nome, boolean padrao) {
+        String valor = System.getenv(nome);
+        if (valor == null || valor.isBlank()) return padrao;
+        return valor.trim().equalsIgnoreCase("true") || valor.trim().equals("1");
+    }
+}
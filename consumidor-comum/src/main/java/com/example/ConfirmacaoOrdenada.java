@@ -0,0 +1,85 @@
+package com.example;
+
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Acks cumulativos de um canal. As mensagens terminam fora de ordem (cada gravação conclui
+ * quando o disco deixa), mas um {@code basicAck(tag, multiple=true)} confirma todas as tags até
+ * {@code tag}; por isso o ack só avança até a maior tag cujas anteriores já terminaram.
+ *
+ * Cada tag precisa ser registrada, na ordem de entrega, antes de poder ser concluída ou devolvida.
+ * A trava é um {@link ReentrantLock}, e não {@code synchronized}: o ack bloqueia no socket dentro
+ * dela, e uma thread virtual presa num monitor prenderia também a thread portadora.
+ */
+public final class ConfirmacaoOrdenada {
+
+    private final Channel canal;
+    private final RegistroAssincrono log;
+    private final ReentrantLock trava = new ReentrantLock();
+    /** Tags entregues e ainda não confirmadas; o valor indica se a mensagem já terminou. */
+    private final TreeMap<Long, Boolean> pendentes = new TreeMap<>();
+
+    public ConfirmacaoOrdenada(Channel canal, RegistroAssincrono log) {
+        this.canal = canal;
+        this.log = log;
+    }
+
+    public void registrar(long deliveryTag) {
+        trava.lock();
+        try {
+            pendentes.put(deliveryTag, Boolean.FALSE);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    public void concluir(long deliveryTag) {
+        trava.lock();
+        try {
+            pendentes.replace(deliveryTag, Boolean.TRUE);
+            avancar();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Devolve uma mensagem que falhou para a fila ({@code basicNack} com requeue). Ela sai das
+     * pendentes, então os acks cumulativos seguintes podem passar por cima da tag dela.
+     */
+    public void devolver(long deliveryTag) {
+        trava.lock();
+        try {
+            pendentes.remove(deliveryTag);
+            try {
+                canal.basicNack(deliveryTag, false, true);
+            } catch (IOException e) {
+                log.erro("falha no nack da mensagem " + deliveryTag, e);
+            }
+            avancar();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private void avancar() {
+        long ultima = -1;
+        Map.Entry<Long, Boolean> primeira;
+        while ((primeira = pendentes.firstEntry()) != null && primeira.getValue()) {
+            ultima = primeira.getKey();
+            pendentes.pollFirstEntry();
+        }
+        if (ultima < 0) return;
+        // Dentro da trava: um ack cumulativo mais antigo enviado depois de um mais novo seria uma tag desconhecida
+        try {
+            canal.basicAck(ultima, true);
+        } catch (IOException e) {
+            log.erro("falha no ack cumulativo até a mensagem " + ultima, e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consulta o {@link LogResultados} de um classificador sem abrir as imagens gravadas: contagem por
+ * rótulo (com confiança média, acertos do cache e latência média ponta a ponta) e por janela de tempo.
+ *
+ * <pre>
+ * java -cp consumidor.jar com.example.ConsultaResultados /app/resultados-faces --desde 24h --janela 1h
+ * </pre>
+ *
+ * {@code --desde} e {@code --ate} aceitam um instante ISO-8601 ({@code 2024-05-01T12:00:00Z}), uma data
+ * ou data e hora locais, ou uma duração para trás a partir de agora ({@code 90s}, {@code 30m}, {@code 24h},
+ * {@code 7d}). {@code --rotulo} filtra por nome do rótulo e {@code --janela} define o tamanho das janelas.
+ */
+public final class ConsultaResultados {
+
+    /** Totais de um rótulo ou de uma janela. */
+    static final class Contagem {
+        long mensagens;
+        long doCache;
+        long comConfianca;
+        double somaConfianca;
+        long comPontaAPonta;
+        long somaPontaAPontaUs;
+
+        void somar(LogResultados.Registro r) {
+            mensagens++;
+            if (r.doCache) doCache++;
+            if (!Float.isNaN(r.confianca)) {
+                comConfianca++;
+                somaConfianca += r.confianca;
+            }
+            if (r.pontaAPontaUs > 0) {
+                comPontaAPonta++;
+                somaPontaAPontaUs += r.pontaAPontaUs;
+            }
+        }
+    }
+
+    private ConsultaResultados() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            System.err.println("Uso: ConsultaResultados <diretorio> [--desde T] [--ate T] [--janela 1h] [--rotulo NOME]");
+            System.exit(2);
+        }
+        Path diretorio = Paths.get(args[0]);
+        long desdeUs = Long.MIN_VALUE;
+        long ateUs = Long.MAX_VALUE;
+        long janelaUs = Duration.ofHours(1).toNanos() / 1000;
+        String rotulo = null;
+        for (int i = 1; i < args.length; i++) {
+            String opcao = args[i];
+            if (i + 1 >= args.length) {
+                System.err.println("Valor ausente para " + opcao);
+                System.exit(2);
+            }
+            String valor = args[++i];
+            switch (opcao) {
+                case "--desde" -> desdeUs = instanteUs(valor);
+                case "--ate" -> ateUs = instanteUs(valor);
+                case "--janela" -> janelaUs = Math.max(1, duracao(valor).toNanos() / 1000);
+                case "--rotulo" -> rotulo = valor;
+                default -> {
+                    System.err.println("Opção desconhecida: " + opcao);
+                    System.exit(2);
+                }
+            }
+        }
+
+        Map<String, Contagem> porRotulo = new TreeMap<>();
+        Map<Long, Contagem> porJanela = new TreeMap<>();
+        Contagem total = new Contagem();
+        long desde = desdeUs, ate = ateUs, janela = janelaUs;
+        String filtro = rotulo;
+        LogResultados.ler(diretorio, r -> {
+            if (r.instanteUs < desde || r.instanteUs >= ate) return;
+            if (filtro != null && !filtro.equalsIgnoreCase(r.nomeRotulo)) return;
+            total.somar(r);
+            porRotulo.computeIfAbsent(r.nomeRotulo, n -> new Contagem()).somar(r);
+            porJanela.computeIfAbsent(Math.floorDiv(r.instanteUs, janela) * janela, n -> new Contagem()).somar(r);
+        });
+
+        System.out.println("Registros: " + total.mensagens + " em " + diretorio);
+        if (total.mensagens == 0) return;
+
+        System.out.println();
+        System.out.printf("%-24s %10s %7s %10s %8s %12s%n", "rotulo", "mensagens", "%", "confianca", "cache", "ponta_ms");
+        for (Map.Entry<String, Contagem> e : porRotulo.entrySet()) {
+            imprimir(e.getKey(), e.getValue(), total.mensagens);
+        }
+
+        System.out.println();
+        System.out.printf("%-24s %10s %7s %10s %8s %12s%n", "janela (UTC)", "mensagens", "%", "confianca", "cache", "ponta_ms");
+        for (Map.Entry<Long, Contagem> e : porJanela.entrySet()) {
+            Instant inicio = Instant.ofEpochSecond(e.getKey() / 1_000_000, (e.getKey() % 1_000_000) * 1000);
+            imprimir(inicio.toString(), e.getValue(), total.mensagens);
+        }
+    }
+
+    private static void imprimir(String chave, Contagem c, long total) {
+        String confianca = c.comConfianca > 0 ? String.format("%.3f", c.somaConfianca / c.comConfianca) : "-";
+        String ponta = c.comPontaAPonta > 0 ? String.format("%.2f", c.somaPontaAPontaUs / 1000.0 / c.comPontaAPonta) : "-";
+        System.out.printf("%-24s %10d %6.1f%% %10s %8d %12s%n", chave, c.mensagens, 100.0 * c.mensagens / total,
+                confianca, c.doCache, ponta);
+    }
+
+    /** Instante em µs desde a época: ISO-8601, data/hora local ou duração para trás a partir de agora. */
+    static long instanteUs(String valor) {
+        Instant instante;
+        try {
+            instante = Instant.parse(valor);
+        } catch (DateTimeParseException e1) {
+            try {
+                instante = LocalDateTime.parse(valor).atZone(ZoneId.systemDefault()).toInstant();
+            } catch (DateTimeParseException e2) {
+                try {
+                    instante = LocalDate.parse(valor).atStartOfDay(ZoneId.systemDefault()).toInstant();
+                } catch (DateTimeParseException e3) {
+                    instante = Instant.now().minus(duracao(valor));
+                }
+            }
+        }
+        return instante.getEpochSecond() * 1_000_000 + instante.getNano() / 1000;
+    }
+
+    /** Durações no formato {@code <n>s}, {@code <n>m}, {@code <n>h} ou {@code <n>d}. */
+    static Duration duracao(String valor) {
+        String v = valor.trim().toLowerCase();
+        if (v.length() < 2) throw new IllegalArgumentException("Duração inválida: " + valor);
+        long n;
+        try {
+            n = Long.parseLong(v.substring(0, v.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Duração inválida: " + valor);
+        }
+        return switch (v.charAt(v.length() - 1)) {
+            case 's' -> Duration.ofSeconds(n);
+            case 'm' -> Duration.ofMinutes(n);
+            case 'h' -> Duration.ofHours(n);
+            case 'd' -> Duration.ofDays(n);
+            default -> throw new IllegalArgumentException("Duração inválida: " + valor);
+        };
+    }
+}
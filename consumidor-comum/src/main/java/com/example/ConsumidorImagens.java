@@ -0,0 +1,844 @@
+package com.example;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Delivery;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import static com.example.Config.lerConfig;
+import static com.example.Config.lerFlag;
+import static com.example.Config.lerTexto;
+
+/**
+ * Pipeline de um {@link Classificador}: treino (com snapshot e recarga a quente), cache de
+ * resultados, consumo da fila em canais paralelos ou em micro-lotes, anotação, gravação e ack.
+ *
+ * O modelo, o cache e as métricas são próprios de cada classificador; a conexão, o pool de entrega,
+ * o gravador e o log vêm de {@link ServidorConsumidores} e são compartilhados por todos os que
+ * rodam na mesma JVM.
+ *
+ * Com threads virtuais cada entrega (ou lote) sai da thread do canal e roda em uma thread virtual
+ * própria, então o número de mensagens em andamento passa a ser limitado pelo prefetch. Só a
+ * decodificação, a extração e a predição disputam as permissões de CPU; esperas na fila do
+ * gravador, no ack e na pausa não ocupam núcleo. As permissões são divididas entre os
+ * classificadores do processo por tempo de CPU ponderado (veja {@link EscalonadorJusto}).
+ */
+public final class ConsumidorImagens {
+
+    static final String EXCHANGE_NAME = "imagens_exchange";
+
+    private final Classificador classificador;
+    private final GravadorImagens gravador;
+    private final RegistroAssincrono log;
+    private final Metricas metricas;
+    // Threads virtuais para as entregas (null no modo com o pool do canal) e a vez deste classificador na CPU (null sem limite)
+    private final ExecutorService execucao;
+    private final EscalonadorJusto.Fila cpu;
+
+    // Trocados juntos pela recarga a quente: sempre o modelo primeiro, depois a versão
+    private volatile ClassificadorVizinhos modelo;
+    private volatile long versaoModelo;
+    // Conjunto de treino do modelo em uso (null no modelo de fallback)
+    private SnapshotModelo treinoAtual;
+
+    // Concorrência: número de canais consumindo a fila, prefetch de cada canal e a pausa artificial por mensagem
+    private final int numConsumidores;
+    private final int prefetch;
+    private final int pausaMs;
+
+    // Prioridades AMQP: x-max-priority da fila (0 desliga; a fila precisa ser recriada para mudar)
+    private final int prioridadeMaxima;
+
+    // Prefetch ajustado pela vazão para que cada mensagem fique no máximo latenciaAlvoMs retida no consumidor
+    private final boolean prefetchAdaptativo;
+    private final int latenciaAlvoMs;
+    private final int prefetchMin;
+    private final int prefetchMax;
+    private final int prefetchAjusteS;
+
+    // Escala automática dos canais pela profundidade da fila, entre escalaMin e escalaMax
+    private final boolean escalaAutomatica;
+    private final int escalaMin;
+    private final int escalaMax;
+    private final int escalaIntervaloS;
+    private final int escalaAlvoS;
+    // Prazo para as mensagens de um canal terminarem quando ele é fechado
+    private final long drenagemMs;
+
+    // Canais abertos por iniciar(); crescem e diminuem com a escala automática
+    private final List<CanalConsumidor> canais = new ArrayList<>();
+    // Retirados pela redução da escala e ainda esperando as mensagens terminarem; o desligamento espera por eles também
+    private final List<CanalConsumidor> drenando = new ArrayList<>();
+    private Connection conexao;
+    private ScheduledExecutorService agendador;
+    private int prefetchInicial;
+    private PrefetchAdaptativo adaptativo;
+    private SupervisorEscala supervisor;
+    private boolean encerrando;
+
+    // Com false (padrão), a imagem original é gravada sem anotação e o classificador decodifica só o necessário
+    private final boolean anotarImagens;
+
+    // Onde o rótulo fica registrado: metadados (tEXt/COM), prefixo do nome do arquivo, indice (rotulos.tsv) ou nenhum
+    private final String rotuloSaida;
+    private IndiceRotulos indice;
+
+    // Armazém compartilhado das imagens enviadas por referência (claim-check do gerador)
+    private final LeitorBlobs blobs;
+
+    // Log mapeado dos resultados (um registro de tamanho fixo por mensagem); diretório vazio desliga
+    private final String resultadosDir;
+    private final int resultadosSegmentoMb;
+    private final int resultadosMaxSegmentos;
+    private LogResultados resultados;
+
+    // Cache de resultados por hash do conteúdo: entradas, MB de imagens anotadas guardadas e arquivo opcional
+    private final CacheResultados cache;
+    private final String cacheArquivo;
+
+    // Threads usadas para decodificar e extrair features do conjunto de treino
+    private final int treinoThreads;
+
+    // Snapshot do modelo treinado; vazio desliga
+    private final String snapshotModelo;
+
+    // Recarga a quente ao mudar o diretório de treino e intervalo da varredura de segurança
+    private final boolean recarregarModelo;
+    private final int recargaVarreduraS;
+
+    // Implementação dos vizinhos mais próximos: auto, kdtree, forca-bruta ou smile
+    private final String backendKnn;
+
+    // Micro-lotes: até loteTamanho mensagens classificadas juntas, esperando no máximo loteEsperaMs (1 desliga)
+    private final int loteTamanho;
+    private final int loteEsperaMs;
+
+    /**
+     * Lê a configuração do classificador; cada variável pode vir com o prefixo do nome dele
+     * (veja {@link Config#variavel}).
+     *
+     * @param execucao  executor de threads virtuais das entregas, ou null para processar na thread do canal
+     * @param cpu       limite da decodificação, extração e predição simultâneas, dividido com os outros
+     *                  classificadores; null não limita
+     */
+    public ConsumidorImagens(Classificador classificador, GravadorImagens gravador, RegistroAssincrono log,
+                             ExecutorService execucao, EscalonadorJusto cpu) {
+        this.classificador = classificador;
+        this.gravador = gravador;
+        this.log = log;
+        this.metricas = new Metricas(classificador.nome());
+        this.execucao = execucao;
+
+        String p = classificador.nome();
+        int nucleos = Runtime.getRuntime().availableProcessors();
+        this.cpu = cpu != null ? cpu.registrar(p, lerConfig(Config.variavel(p, "PESO"), 1)) : null;
+        this.numConsumidores = lerConfig(Config.variavel(p, "NUM_CONSUMIDORES"), nucleos);
+        // Com threads virtuais o prefetch é o que mantém várias mensagens em andamento por canal
+        this.prefetch = lerConfig(Config.variavel(p, "PREFETCH"), execucao != null ? 64 : 2);
+        this.pausaMs = lerConfig(Config.variavel(p, "PAUSA_MS"), 0);
+        this.prioridadeMaxima = lerConfig(Config.variavel(p, "PRIORIDADE_MAXIMA"), 0);
+        this.prefetchAdaptativo = lerFlag(Config.variavel(p, "PREFETCH_ADAPTATIVO"), false);
+        this.latenciaAlvoMs = lerConfig(Config.variavel(p, "LATENCIA_ALVO_MS"), 2000);
+        this.prefetchMin = lerConfig(Config.variavel(p, "PREFETCH_MIN"), 1);
+        this.prefetchMax = lerConfig(Config.variavel(p, "PREFETCH_MAX"), 256);
+        this.prefetchAjusteS = lerConfig(Config.variavel(p, "PREFETCH_AJUSTE_S"), 5);
+        this.escalaAutomatica = lerFlag(Config.variavel(p, "ESCALA_AUTOMATICA"), false);
+        this.escalaMin = Math.max(1, lerConfig(Config.variavel(p, "ESCALA_MIN"), 1));
+        this.escalaMax = Math.max(escalaMin, lerConfig(Config.variavel(p, "ESCALA_MAX"), Math.max(numConsumidores, 2 * nucleos)));
+        this.escalaIntervaloS = lerConfig(Config.variavel(p, "ESCALA_INTERVALO_S"), 5);
+        this.escalaAlvoS = lerConfig(Config.variavel(p, "ESCALA_ALVO_S"), 10);
+        this.drenagemMs = lerConfig(Config.variavel(p, "DRENAGEM_S"), 30) * 1000L;
+        this.anotarImagens = lerFlag(Config.variavel(p, "ANOTAR_IMAGENS"), false);
+        this.rotuloSaida = lerTexto(Config.variavel(p, "ROTULO_SAIDA"), "metadados").toLowerCase();
+        this.blobs = new LeitorBlobs(Paths.get(lerTexto(Config.variavel(p, "ARMAZEM_BLOBS"), "/app/blobs")));
+        this.resultadosDir = lerTexto(Config.variavel(p, "RESULTADOS_DIR"), "/app/resultados-" + p);
+        this.resultadosSegmentoMb = lerConfig(Config.variavel(p, "RESULTADOS_SEGMENTO_MB"), 64);
+        this.resultadosMaxSegmentos = lerConfig(Config.variavel(p, "RESULTADOS_MAX_SEGMENTOS"), 0);
+        this.cache = new CacheResultados(
+                lerConfig(Config.variavel(p, "CACHE_ENTRADAS"), 10000),
+                lerConfig(Config.variavel(p, "CACHE_SAIDA_MB"), 64) * 1024L * 1024L);
+        this.cacheArquivo = lerTexto(Config.variavel(p, "CACHE_ARQUIVO"), null);
+        this.treinoThreads = lerConfig(Config.variavel(p, "TREINO_THREADS"), nucleos);
+        this.snapshotModelo = lerTexto(Config.variavel(p, "SNAPSHOT_MODELO"), "/app/modelo-" + p + ".bin");
+        this.recarregarModelo = lerFlag(Config.variavel(p, "RECARREGAR_MODELO"), true);
+        this.recargaVarreduraS = lerConfig(Config.variavel(p, "RECARGA_VARREDURA_S"), 30);
+        this.backendKnn = lerTexto(Config.variavel(p, "BACKEND_KNN"), "auto");
+        this.loteTamanho = lerConfig(Config.variavel(p, "LOTE_TAMANHO"), 1);
+        this.loteEsperaMs = lerConfig(Config.variavel(p, "LOTE_ESPERA_MS"), 20);
+    }
+
+    public Classificador classificador() {
+        return classificador;
+    }
+
+    public Metricas metricas() {
+        return metricas;
+    }
+
+    public boolean usaLotes() {
+        return loteTamanho > 1;
+    }
+
+    public boolean escalaAutomatica() {
+        return escalaAutomatica;
+    }
+
+    /** Maior número de canais que este classificador pode abrir (para dimensionar o pool de entrega). */
+    public int maximoDeCanais() {
+        return escalaAutomatica ? escalaMax : numConsumidores;
+    }
+
+    /**
+     * Treina (ou carrega do snapshot) o modelo, abre o cache e começa a observar o diretório de treino.
+     */
+    public void preparar() throws IOException {
+        Files.createDirectories(Paths.get(classificador.diretorioTreino()));
+        Files.createDirectories(Paths.get(classificador.diretorioSaida()));
+        if (rotuloSaida.equals("indice")) {
+            indice = new IndiceRotulos(Paths.get(classificador.diretorioSaida(), "rotulos.tsv"), log);
+        }
+        if (resultadosDir != null && !resultadosDir.isBlank()) {
+            resultados = new LogResultados(Paths.get(resultadosDir), resultadosSegmentoMb * 1024L * 1024L, resultadosMaxSegmentos, log);
+        }
+
+        treinarModelo();
+
+        cache.limpar(versaoModelo);
+        if (cacheArquivo != null && !cacheArquivo.isBlank()) {
+            cache.abrirArquivo(Paths.get(cacheArquivo), versaoModelo);
+        }
+        if (recarregarModelo) {
+            iniciarRecarga();
+        }
+        metricas.registrarContador("carga_ia_cache_acertos_total", "Mensagens respondidas pelo cache de resultados", cache::acertos);
+        metricas.registrarContador("carga_ia_cache_faltas_total", "Mensagens que não estavam no cache de resultados", cache::faltas);
+        metricas.registrarContador("carga_ia_cache_remocoes_total", "Resultados removidos do cache para abrir espaço", cache::remocoes);
+        // O log é do processo: com vários classificadores, cada um expõe o mesmo total
+        metricas.registrarContador("carga_ia_log_descartados_total", "Registros de log descartados com o anel cheio", log::descartados);
+    }
+
+    /** Relatório periódico do cache, se ele estiver ativo. */
+    public void agendarRelatorioCache(ScheduledExecutorService agendador) {
+        if (!cache.ativo()) return;
+        agendador.scheduleAtFixedRate(() -> System.out.println(" [cache " + classificador.nome() + "] " + cache.estatisticas()),
+                60, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Declara e liga a fila e abre os canais de consumo na conexão compartilhada.
+     *
+     * @param agendador  prazo dos lotes incompletos, ajuste do prefetch adaptativo e supervisão da escala
+     */
+    public void iniciar(Connection connection, ScheduledExecutorService agendador) throws IOException {
+        String queueName = classificador.fila();
+        Channel channel = connection.createChannel();
+        channel.exchangeDeclare(EXCHANGE_NAME, "topic");
+        Map<String, Object> argumentos = prioridadeMaxima > 0
+                ? Collections.singletonMap("x-max-priority", Math.min(255, prioridadeMaxima))
+                : null;
+        // Durável e sem exclusividade: réplicas do consumidor em outros processos disputam a mesma fila
+        channel.queueDeclare(queueName, true, false, false, argumentos);
+        channel.queueBind(queueName, EXCHANGE_NAME, classificador.routingKey());
+
+        this.conexao = connection;
+        this.agendador = agendador;
+        // Em lotes o prefetch precisa comportar pelo menos um lote inteiro
+        this.prefetchInicial = usaLotes() ? Math.max(prefetch, 2 * loteTamanho) : prefetch;
+        this.adaptativo = prefetchAdaptativo
+                ? new PrefetchAdaptativo(classificador.nome(), metricas::processadas, prefetchInicial, latenciaAlvoMs,
+                        usaLotes() ? Math.max(prefetchMin, loteTamanho) : prefetchMin, prefetchMax, log)
+                : null;
+        int canaisIniciais = escalaAutomatica ? Math.max(escalaMin, Math.min(escalaMax, numConsumidores)) : numConsumidores;
+
+        System.out.println(" [*] Consumidor de " + classificador.nome().toUpperCase() + " aguardando imagens na fila '"
+                + queueName + "' com " + canaisIniciais + " consumidor(es) concorrente(s)"
+                + (escalaAutomatica ? " (escala automática de " + escalaMin + " a " + escalaMax + ")" : "")
+                + ", prefetch " + prefetchInicial
+                + (adaptativo != null ? " (adaptativo, alvo " + latenciaAlvoMs + " ms)" : "")
+                + (prioridadeMaxima > 0 ? ", prioridades até " + prioridadeMaxima : "")
+                + (usaLotes() ? ", lotes de até " + loteTamanho + " mensagens ou " + loteEsperaMs + " ms" : "")
+                + (execucao != null ? ", threads virtuais" : "")
+                + (cpu != null ? ", CPU compartilhada com peso " + cpu.peso() : ""));
+
+        // Cada canal entrega suas mensagens em série, então N canais no pool de entrega processam até
+        // N imagens ao mesmo tempo (limitado ao tamanho do pool). O ack sai pelo canal que recebeu a mensagem.
+        for (int i = 0; i < canaisIniciais; i++) {
+            abrirCanal();
+        }
+        if (adaptativo != null) adaptativo.agendar(agendador, prefetchAjusteS);
+        if (escalaAutomatica) {
+            supervisor = new SupervisorEscala(classificador.nome(), connection, queueName, new SupervisorEscala.Alvo() {
+                @Override
+                public int canais() {
+                    synchronized (ConsumidorImagens.this) {
+                        return canais.size();
+                    }
+                }
+
+                @Override
+                public void abrirCanal() throws IOException {
+                    ConsumidorImagens.this.abrirCanal();
+                }
+
+                @Override
+                public void fecharCanal() throws InterruptedException {
+                    ConsumidorImagens.this.fecharCanal();
+                }
+            }, metricas::processadas, escalaMin, escalaMax, escalaAlvoS, log);
+            supervisor.agendar(agendador, escalaIntervaloS);
+        }
+    }
+
+    /** Abre mais um canal consumindo a fila. */
+    private synchronized void abrirCanal() throws IOException {
+        if (encerrando) return;
+        Channel canal = conexao.createChannel();
+        int prefetchCanal = adaptativo != null ? adaptativo.atual() : prefetchInicial;
+        CanalConsumidor consumidor = new CanalConsumidor(canal, log);
+        if (usaLotes()) {
+            consumirEmLotes(consumidor, prefetchCanal);
+        } else {
+            LongConsumer confirmar = tag -> {
+                confirmar(canal, tag);
+                consumidor.concluida();
+            };
+            LongConsumer devolver = tag -> {
+                devolver(canal, tag);
+                consumidor.concluida();
+            };
+            consumidor.consumir(classificador.fila(), prefetchCanal,
+                    delivery -> despachar(() -> processarLote(Collections.singletonList(delivery), confirmar, devolver)));
+        }
+        canais.add(consumidor);
+        if (adaptativo != null) adaptativo.adicionar(consumidor);
+    }
+
+    /** Drena e fecha o canal aberto por último (a redução da escala nunca passa do mínimo). */
+    private void fecharCanal() throws InterruptedException {
+        CanalConsumidor consumidor;
+        synchronized (this) {
+            if (canais.size() <= 1 || encerrando) return;
+            consumidor = canais.remove(canais.size() - 1);
+            drenando.add(consumidor);
+        }
+        if (adaptativo != null) adaptativo.remover(consumidor);
+        try {
+            if (!consumidor.drenar(drenagemMs)) {
+                log.aviso("prazo de drenagem esgotado em um canal de " + classificador.nome()
+                        + "; as mensagens sem ack voltam para a fila");
+            }
+        } finally {
+            synchronized (this) {
+                drenando.remove(consumidor);
+            }
+        }
+    }
+
+    /**
+     * Primeira etapa do desligamento: para de receber mensagens em todos os canais. As já entregues
+     * continuam até o ack; veja {@link #aguardarConcluidas(long)}.
+     */
+    public void pararDeConsumir() {
+        List<CanalConsumidor> abertos;
+        synchronized (this) {
+            encerrando = true;
+            abertos = new ArrayList<>(canais);
+        }
+        if (supervisor != null) supervisor.encerrar();
+        for (CanalConsumidor consumidor : abertos) {
+            consumidor.cancelar();
+        }
+    }
+
+    /**
+     * Espera as mensagens em andamento serem gravadas e confirmadas e fecha os canais, inclusive
+     * os que a redução da escala ainda está drenando.
+     *
+     * @param limite  prazo em {@link System#nanoTime()}
+     * @return false se alguma mensagem ficou sem ack (ela volta para a fila quando a conexão fechar)
+     */
+    public boolean aguardarConcluidas(long limite) throws InterruptedException {
+        List<CanalConsumidor> abertos;
+        synchronized (this) {
+            abertos = new ArrayList<>(canais);
+            abertos.addAll(drenando);
+            canais.clear();
+        }
+        boolean todas = true;
+        for (CanalConsumidor consumidor : abertos) {
+            todas &= consumidor.aguardarEFechar(limite);
+        }
+        return todas;
+    }
+
+    /**
+     * Última etapa do desligamento, depois das gravações: leva ao disco o anel do cache e o
+     * segmento atual do log de resultados, que de outra forma dependem do kernel para sair da memória.
+     */
+    public void fechar() {
+        cache.fechar();
+        if (resultados != null) resultados.fechar();
+    }
+
+    /**
+     * Modo em lotes: as entregas de um canal são agrupadas e classificadas juntas, e os acks saem
+     * cumulativos ({@code multiple=true}) à medida que as gravações terminam. O prefetch do canal já vem
+     * elevado para que um lote inteiro possa chegar enquanto o anterior ainda está sendo gravado.
+     */
+    private void consumirEmLotes(CanalConsumidor consumidor, int prefetchCanal) throws IOException {
+        ConfirmacaoOrdenada confirmacao = new ConfirmacaoOrdenada(consumidor.getChannel(), log);
+        LongConsumer confirmar = tag -> {
+            confirmacao.concluir(tag);
+            consumidor.concluida();
+        };
+        LongConsumer devolver = tag -> {
+            confirmacao.devolver(tag);
+            consumidor.concluida();
+        };
+        AcumuladorLote<Delivery> lote = new AcumuladorLote<>(loteTamanho, loteEsperaMs, agendador,
+                entregas -> despachar(() -> processarLote(entregas, confirmar, devolver)));
+        consumidor.consumir(classificador.fila(), prefetchCanal, delivery -> {
+            confirmacao.registrar(delivery.getEnvelope().getDeliveryTag());
+            lote.adicionar(delivery);
+        });
+    }
+
+    /** Roda a tarefa em uma thread virtual nova ou, sem elas, na própria thread que entregou a mensagem. */
+    private void despachar(Runnable tarefa) {
+        if (execucao == null) {
+            tarefa.run();
+        } else {
+            execucao.execute(tarefa);
+        }
+    }
+
+    /** Uma mensagem entre a decodificação e a gravação. */
+    private static final class Mensagem {
+        final Delivery delivery;
+        final long deliveryTag;
+        // Imagem recebida: o corpo da mensagem ou, com claim-check, o blob mapeado em memória
+        ByteBuffer conteudo;
+        int tamanho;
+        long hash;
+        // Headers publicado_em_us (0 se ausente) e message_id do gerador
+        final long publicadoEmUs;
+        final Object idMensagem;
+        // Tempo de cada etapa em µs, para o log
+        long filaUs;
+        long decodificacaoUs;
+        long extracaoUs;
+        long predicaoUs;
+        long anotacaoUs;
+        CacheResultados.Entrada emCache;
+        BufferedImage img;
+        ByteBuffer saidaPronta;
+        // Features a classificar; null quando a predição veio do cache
+        double[] features;
+        int predicao;
+        // Fração dos k vizinhos com o rótulo previsto e distância ao mais próximo; NaN quando veio do cache
+        float confianca = Float.NaN;
+        float distancia = Float.NaN;
+
+        Mensagem(Delivery delivery) {
+            this.delivery = delivery;
+            this.deliveryTag = delivery.getEnvelope().getDeliveryTag();
+            Map<String, Object> headers = delivery.getProperties().getHeaders();
+            this.publicadoEmUs = Metricas.publicadoEmUs(headers);
+            this.idMensagem = headers != null ? headers.get("message_id") : null;
+        }
+    }
+
+    /**
+     * Decodifica e extrai as features de todas as mensagens, classifica as que não estavam no cache
+     * com uma única chamada ao modelo e então anota, grava e confirma cada uma.
+     *
+     * @param devolver  nack com requeue, para as mensagens cuja gravação falhou
+     */
+    private void processarLote(List<Delivery> entregas, LongConsumer confirmar, LongConsumer devolver) {
+        // Versão lida antes do modelo: se a versão já é nova, o modelo também é
+        long versao = versaoModelo;
+        ClassificadorVizinhos modeloAtual = modelo;
+
+        List<Mensagem> mensagens = new ArrayList<>(entregas.size());
+        List<Mensagem> aClassificar = new ArrayList<>();
+        // Uma permissão cobre a parte de CPU do lote inteiro e é devolvida antes da anotação e da gravação
+        long inicioCpu = cpu != null ? cpu.adquirir() : 0;
+        try {
+            prepararEClassificar(entregas, mensagens, aClassificar, modeloAtual, versao, confirmar);
+        } finally {
+            if (cpu != null) cpu.liberar(inicioCpu);
+        }
+
+        for (Mensagem mensagem : mensagens) {
+            concluir(mensagem, versao, confirmar, devolver);
+        }
+    }
+
+    private void prepararEClassificar(List<Delivery> entregas, List<Mensagem> mensagens, List<Mensagem> aClassificar,
+                                      ClassificadorVizinhos modeloAtual, long versao, LongConsumer confirmar) {
+        for (Delivery delivery : entregas) {
+            Mensagem mensagem = new Mensagem(delivery);
+            mensagem.filaUs = metricas.registrarDesdeEpoca(Metricas.Etapa.FILA, mensagem.publicadoEmUs);
+            try {
+                abrirConteudo(mensagem);
+                metricas.recebidos(mensagem.tamanho);
+                if (!preparar(mensagem)) {
+                    metricas.erro();
+                    confirmar.accept(mensagem.deliveryTag);
+                    continue;
+                }
+                mensagens.add(mensagem);
+                if (mensagem.features != null) aClassificar.add(mensagem);
+            } catch (Exception e) {
+                log.erro("falha ao preparar a mensagem " + mensagem.idMensagem, e);
+                metricas.erro();
+                confirmar.accept(mensagem.deliveryTag);
+            }
+        }
+
+        if (!aClassificar.isEmpty()) {
+            try {
+                double[][] features = new double[aClassificar.size()][];
+                for (int i = 0; i < features.length; i++) {
+                    features[i] = aClassificar.get(i).features;
+                }
+                long inicio = System.nanoTime();
+                float[] confiancas = new float[features.length];
+                float[] distancias = new float[features.length];
+                int[] predicoes = modeloAtual.preverLote(features, confiancas, distancias);
+                long predicaoUs = metricas.registrar(Metricas.Etapa.PREDICAO, inicio);
+                for (int i = 0; i < predicoes.length; i++) {
+                    Mensagem mensagem = aClassificar.get(i);
+                    mensagem.predicao = predicoes[i];
+                    mensagem.predicaoUs = predicaoUs;
+                    mensagem.confianca = confiancas[i];
+                    mensagem.distancia = distancias[i];
+                    cache.guardar(mensagem.hash, mensagem.tamanho, mensagem.predicao, versao);
+                }
+            } catch (RuntimeException e) {
+                log.erro("falha ao classificar um lote de " + aClassificar.size() + " mensagem(ns)", e);
+                for (Mensagem mensagem : aClassificar) {
+                    metricas.erro();
+                    confirmar.accept(mensagem.deliveryTag);
+                }
+                mensagens.removeAll(aClassificar);
+            }
+        }
+    }
+
+    /**
+     * Aponta a mensagem para a imagem: o corpo recebido ou o blob referenciado por {@code blob_sha256}.
+     * Um blob ausente é um erro da mensagem, que é confirmada e descartada como as imagens ilegíveis.
+     */
+    private void abrirConteudo(Mensagem mensagem) throws IOException {
+        Map<String, Object> headers = mensagem.delivery.getProperties().getHeaders();
+        String blob = LeitorBlobs.referencia(headers);
+        if (blob == null) {
+            mensagem.conteudo = ByteBuffer.wrap(mensagem.delivery.getBody()).asReadOnlyBuffer();
+        } else {
+            Object tamanho = headers.get("blob_tamanho");
+            mensagem.conteudo = blobs.abrir(blob, tamanho instanceof Number ? ((Number) tamanho).longValue() : -1);
+        }
+        mensagem.tamanho = mensagem.conteudo.remaining();
+        mensagem.hash = CacheResultados.hash(mensagem.conteudo);
+    }
+
+    /**
+     * Busca a mensagem no cache e, se preciso, decodifica a imagem e extrai as features.
+     * Retorna false se nenhum leitor reconhecer a imagem.
+     */
+    private boolean preparar(Mensagem mensagem) throws IOException {
+        mensagem.emCache = cache.buscar(mensagem.hash, mensagem.tamanho);
+        byte[] saidaEmCache = mensagem.emCache != null ? mensagem.emCache.saida() : null;
+        if (mensagem.emCache != null && (!anotarImagens || saidaEmCache != null)) {
+            // Imagem repetida: sem decodificar, classificar ou recodificar
+            mensagem.predicao = mensagem.emCache.rotulo;
+            mensagem.saidaPronta = anotarImagens ? ByteBuffer.wrap(saidaEmCache) : mensagem.conteudo;
+            return true;
+        }
+        long inicio = System.nanoTime();
+        try (DecodificadorImagem decodificador = DecodificadorImagem.abrir(mensagem.conteudo)) {
+            if (decodificador == null) return false;
+            if (anotarImagens) {
+                mensagem.img = decodificador.lerCompleta();
+                mensagem.decodificacaoUs = metricas.registrar(Metricas.Etapa.DECODIFICACAO, inicio);
+                if (mensagem.emCache != null) {
+                    mensagem.predicao = mensagem.emCache.rotulo;
+                } else {
+                    inicio = System.nanoTime();
+                    mensagem.features = classificador.extrairFeatures(mensagem.img);
+                    mensagem.extracaoUs = metricas.registrar(Metricas.Etapa.EXTRACAO, inicio);
+                }
+            } else {
+                // Aqui a leitura parcial acontece dentro da extração e entra no tempo dela
+                mensagem.decodificacaoUs = metricas.registrar(Metricas.Etapa.DECODIFICACAO, inicio);
+                inicio = System.nanoTime();
+                mensagem.features = classificador.extrairFeatures(decodificador);
+                mensagem.extracaoUs = metricas.registrar(Metricas.Etapa.EXTRACAO, inicio);
+                mensagem.saidaPronta = mensagem.conteudo;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Anota a imagem com a predição e a entrega ao gravador, que confirma a mensagem depois de gravá-la.
+     * Se a gravação falhar, a mensagem volta uma vez para a fila; se já tinha voltado, é confirmada
+     * como erro para não circular para sempre.
+     */
+    private void concluir(Mensagem mensagem, long versao, LongConsumer confirmar, LongConsumer devolver) {
+        Delivery delivery = mensagem.delivery;
+        long deliveryTag = mensagem.deliveryTag;
+        boolean ackComGravador = false;
+        try {
+            String resultado = classificador.nomeDoRotulo(mensagem.predicao);
+
+            String originalFileName = "desconhecido_" + System.currentTimeMillis() + "." + classificador.formatoSaida();
+
+            AMQP.BasicProperties props = delivery.getProperties();
+            Map<String, Object> headers = props.getHeaders();
+            if (headers != null && headers.containsKey("filename")) {
+                originalFileName = headers.get("filename").toString();
+            }
+
+            String nomeSaida = rotuloSaida.equals("prefixo") ? prefixoDoRotulo(resultado) + "_" + originalFileName : originalFileName;
+            File outputFile = new File(classificador.diretorioSaida() + "/" + nomeSaida);
+            // O ack só sai depois que a imagem estiver gravada em disco (e, com índice, registrada nele)
+            Runnable aoGravar = () -> {
+                if (indice != null) indice.registrar(nomeSaida, resultado, mensagem.idMensagem);
+                confirmar.accept(deliveryTag);
+                metricas.mensagemConcluida();
+                long pontaAPontaUs = metricas.registrarDesdeEpoca(Metricas.Etapa.PONTA_A_PONTA, mensagem.publicadoEmUs);
+                if (resultados != null) {
+                    resultados.registrar(Metricas.agoraEpocaUs(), mensagem.publicadoEmUs,
+                            CacheResultados.hash(nomeSaida.getBytes(StandardCharsets.UTF_8)), mensagem.hash,
+                            mensagem.predicao, resultado, mensagem.confianca, mensagem.distancia, mensagem.tamanho,
+                            mensagem.features == null, mensagem.filaUs, mensagem.decodificacaoUs, mensagem.extracaoUs,
+                            mensagem.predicaoUs, mensagem.anotacaoUs, pontaAPontaUs, mensagem.idMensagem);
+                }
+            };
+            Consumer<Exception> aoFalhar = erro -> {
+                metricas.erro();
+                boolean devolvida = delivery.getEnvelope().isRedeliver();
+                log.erro(erro.getMessage() + (devolvida ? "; descartada (já tinha voltado para a fila)" : "; devolvida para a fila"),
+                        erro.getCause());
+                if (devolvida) {
+                    confirmar.accept(deliveryTag);
+                } else {
+                    devolver.accept(deliveryTag);
+                }
+            };
+            if (mensagem.img != null) {
+                long inicio = System.nanoTime();
+                BufferedImage img = desenharTextoNaImagem(mensagem.img, resultado);
+                mensagem.anotacaoUs = metricas.registrar(Metricas.Etapa.ANOTACAO, inicio);
+                gravador.enviar(img, classificador.formatoSaida(), outputFile,
+                        codificada -> cache.guardarSaida(mensagem.hash, mensagem.tamanho, codificada, versao),
+                        aoGravar, aoFalhar, metricas);
+            } else if (!anotarImagens && rotuloSaida.equals("metadados")) {
+                // Bytes recebidos com o rótulo em um chunk tEXt/segmento COM, sem recodificar. A imagem anotada
+                // (recodificada agora ou vinda do cache) já traz o rótulo desenhado e sai igual nos dois casos
+                gravador.enviarPartes(MetadadosImagem.comTexto(mensagem.saidaPronta, "classificacao", resultado),
+                        outputFile, aoGravar, aoFalhar, metricas);
+            } else {
+                gravador.enviarPartes(new ByteBuffer[]{mensagem.saidaPronta}, outputFile, aoGravar, aoFalhar, metricas);
+            }
+            ackComGravador = true;
+
+            if (log.amostrar()) {
+                log.resultado(delivery.getEnvelope().getRoutingKey(), mensagem.idMensagem, nomeSaida, resultado,
+                        mensagem.features == null, mensagem.filaUs, mensagem.decodificacaoUs, mensagem.extracaoUs,
+                        mensagem.predicaoUs, mensagem.anotacaoUs);
+            }
+
+            if (pausaMs > 0) {
+                TimeUnit.MILLISECONDS.sleep(pausaMs);
+            }
+        } catch (InterruptedException e) {
+            log.aviso("a thread foi interrompida durante a pausa.");
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.erro("falha ao concluir a mensagem " + mensagem.idMensagem, e);
+        } finally {
+            if (!ackComGravador) {
+                metricas.erro();
+                confirmar.accept(deliveryTag);
+            }
+        }
+    }
+
+    private void confirmar(Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, false);
+        } catch (IOException e) {
+            log.erro("falha no ack da mensagem " + deliveryTag, e);
+        }
+    }
+
+    private void devolver(Channel channel, long deliveryTag) {
+        try {
+            channel.basicNack(deliveryTag, false, true);
+        } catch (IOException e) {
+            log.erro("falha no nack da mensagem " + deliveryTag, e);
+        }
+    }
+
+    /** Rótulo usável em nome de arquivo: {@code Borussia Dortmund} vira {@code Borussia-Dortmund}. */
+    private static String prefixoDoRotulo(String rotulo) {
+        return rotulo.replaceAll("[^\\p{L}\\p{N}]+", "-");
+    }
+
+    /** Escreve o rótulo no canto superior esquerdo (visível no pacote para os benchmarks das etapas). */
+    static BufferedImage desenharTextoNaImagem(BufferedImage img, String texto) {
+        Graphics2D g = img.createGraphics();
+        Font font = new Font("Arial", Font.BOLD, 36);
+        g.setFont(font);
+        g.setColor(Color.YELLOW);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.drawString(texto, 10, 40);
+        g.dispose();
+        return img;
+    }
+
+    private void treinarModelo() {
+        String nome = classificador.nome();
+        System.out.println("Iniciando treinamento do modelo de " + nome + " com imagens de " + classificador.diretorioTreino());
+        File diretorioDeTreino = new File(classificador.diretorioTreino());
+        File[] arquivos = diretorioDeTreino.listFiles((dir, name) ->
+                name.toLowerCase().endsWith(".png") || name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".jpeg"));
+        if (arquivos != null) {
+            Arrays.sort(arquivos, Comparator.comparing(File::getName));
+        }
+
+        // Snapshot válido para o conteúdo atual do diretório: reconstrói o KNN sem decodificar imagens
+        long impressao = impressaoDoTreino(arquivos);
+        if (carregarSnapshot(impressao)) return;
+
+        List<double[]> featuresList = new ArrayList<>();
+        List<Integer> labelsList = new ArrayList<>();
+        List<String> nomesList = new ArrayList<>();
+
+        if (arquivos != null) {
+            System.out.println("Encontrados " + arquivos.length + " arquivos de imagem para processar.");
+            List<TreinoParalelo.Amostra> amostras = TreinoParalelo.extrair(arquivos, treinoThreads,
+                    classificador::rotuloDeTreino, classificador::extrairFeatures);
+            for (TreinoParalelo.Amostra amostra : amostras) {
+                if (amostra.valida()) {
+                    featuresList.add(amostra.features);
+                    labelsList.add(amostra.rotulo);
+                    nomesList.add(amostra.arquivo.getName());
+                }
+            }
+        }
+
+        if (featuresList.size() > 1 && labelsList.stream().distinct().count() > 1) {
+            double[][] x = featuresList.toArray(new double[0][]);
+            int[] y = labelsList.stream().mapToInt(Integer::intValue).toArray();
+            int k = classificador.k(x.length);
+            modelo = treinarClassificador(x, y, k);
+            versaoModelo = CacheResultados.versaoModelo(x, y, k);
+            System.out.println("✅ Modelo de IA para " + nome + " treinado com " + x.length + " imagens!");
+            treinoAtual = new SnapshotModelo(impressao, k, x, y, nomesList.toArray(new String[0]));
+            gravarSnapshot(treinoAtual);
+        } else {
+            System.out.println("‼️ AVISO: Não foram encontradas imagens de treino suficientes para " + nome
+                    + ". Usando modelo de fallback.");
+            double[][] x = classificador.amostrasFallback();
+            int[] y = classificador.rotulosFallback();
+            modelo = treinarClassificador(x, y, 1);
+            versaoModelo = CacheResultados.versaoModelo(x, y, 1);
+        }
+    }
+
+    /**
+     * Observa o diretório de treino e troca o modelo sem parar o consumo quando ele muda.
+     */
+    private void iniciarRecarga() throws IOException {
+        RecarregadorModelo recarregador = new RecarregadorModelo(new File(classificador.diretorioTreino()), treinoThreads,
+                recargaVarreduraS * 1000L, classificador::rotuloDeTreino, classificador::extrairFeatures,
+                this::trocarModelo, log);
+        if (treinoAtual != null) {
+            double[][] x = treinoAtual.matriz();
+            for (int i = 0; i < treinoAtual.amostras(); i++) {
+                recarregador.registrarAmostra(treinoAtual.nomes[i], treinoAtual.rotulos[i], x[i]);
+            }
+        }
+        recarregador.iniciar();
+    }
+
+    private void trocarModelo(double[][] x, int[] y, String[] nomes, File[] arquivos) {
+        int k = classificador.k(x.length);
+        ClassificadorVizinhos novoModelo = treinarClassificador(x, y, k);
+        long novaVersao = CacheResultados.versaoModelo(x, y, k);
+        modelo = novoModelo;
+        versaoModelo = novaVersao;
+        cache.limpar(novaVersao);
+        System.out.println("✅ Modelo de IA para " + classificador.nome() + " recarregado com " + x.length + " imagens!");
+        treinoAtual = new SnapshotModelo(impressaoDoTreino(arquivos), k, x, y, nomes);
+        gravarSnapshot(treinoAtual);
+    }
+
+    private ClassificadorVizinhos treinarClassificador(double[][] x, int[] y, int k) {
+        String backend = ClassificadorVizinhos.escolherBackend(backendKnn, x.length, x.length > 0 ? x[0].length : 0);
+        System.out.println(" [*] KNN de " + classificador.nome() + ": backend " + backend + ", k=" + k + ", " + x.length + " amostras");
+        return ClassificadorVizinhos.treinar(backend, x, y, k);
+    }
+
+    private long impressaoDoTreino(File[] arquivos) {
+        if (arquivos == null || snapshotModelo.isBlank()) return 0;
+        try {
+            double[][] fallback = classificador.amostrasFallback();
+            String extrator = classificador.nome() + "|dimensao=" + (fallback.length > 0 ? fallback[0].length : 0)
+                    + "|" + classificador.versaoFeatures();
+            return SnapshotModelo.impressaoDiretorio(arquivos, extrator);
+        } catch (IOException e) {
+            log.aviso("não foi possível calcular a impressão do diretório de treino: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private boolean carregarSnapshot(long impressao) {
+        if (impressao == 0) return false;
+        SnapshotModelo snapshot = SnapshotModelo.ler(Paths.get(snapshotModelo));
+        if (snapshot == null || snapshot.impressaoDiretorio != impressao) return false;
+        double[][] x = snapshot.matriz();
+        modelo = treinarClassificador(x, snapshot.rotulos, snapshot.k);
+        versaoModelo = CacheResultados.versaoModelo(x, snapshot.rotulos, snapshot.k);
+        treinoAtual = snapshot;
+        System.out.println("✅ Modelo de IA para " + classificador.nome() + " carregado do snapshot " + snapshotModelo
+                + " (" + snapshot.amostras() + " imagens, diretório de treino e extrator inalterados)");
+        return true;
+    }
+
+    private void gravarSnapshot(SnapshotModelo snapshot) {
+        if (snapshot.impressaoDiretorio == 0) return;
+        try {
+            snapshot.gravar(Paths.get(snapshotModelo));
+        } catch (IOException e) {
+            log.aviso("não foi possível gravar o snapshot do modelo: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Decodificação sob medida para os extratores de features.
+ *
+ * Abre o {@link ImageReader} uma vez, lê só o cabeçalho para saber as dimensões e permite
+ * decodificar apenas uma região ({@code setSourceRegion}) ou uma versão subamostrada
+ * ({@code setSourceSubsampling}) da imagem. A imagem inteira só precisa ser materializada
+ * quando uma cópia anotada vai ser gravada.
+ */
+public final class DecodificadorImagem implements Closeable {
+
+    private final ImageInputStream stream;
+    private final ImageReader reader;
+
+    private DecodificadorImagem(ImageInputStream stream, ImageReader reader) {
+        this.stream = stream;
+        this.reader = reader;
+    }
+
+    /**
+     * Prepara a leitura dos bytes recebidos. Retorna null quando nenhum leitor reconhece o formato,
+     * o mesmo caso em que {@code ImageIO.read} devolveria null.
+     */
+    public static DecodificadorImagem abrir(byte[] bytes) throws IOException {
+        return abrir(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Como {@link #abrir(byte[])}, lendo direto do buffer (inclusive de um arquivo mapeado em
+     * memória, veja {@link LeitorBlobs}) sem copiar a imagem para o heap.
+     */
+    public static DecodificadorImagem abrir(ByteBuffer conteudo) throws IOException {
+        // Leitura posicionada no próprio buffer: sem o arquivo temporário do cache padrão do ImageIO nem cópia em memória
+        ImageInputStream stream = new EntradaBuffer(conteudo);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            stream.close();
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(stream, false, true);
+        return new DecodificadorImagem(stream, reader);
+    }
+
+    public int largura() throws IOException {
+        return reader.getWidth(0);
+    }
+
+    public int altura() throws IOException {
+        return reader.getHeight(0);
+    }
+
+    /** Decodificação completa, equivalente a {@code ImageIO.read}. */
+    public BufferedImage lerCompleta() throws IOException {
+        return reader.read(0, reader.getDefaultReadParam());
+    }
+
+    /** Decodifica apenas a região informada (já recortada aos limites da imagem). */
+    public BufferedImage lerRegiao(Rectangle regiao) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(regiao);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Decodifica uma grade de pixels: dentro da região, um pixel a cada {@code passoX} colunas
+     * e {@code passoY} linhas, a partir do canto superior esquerdo da região.
+     */
+    public BufferedImage lerGrade(Rectangle regiao, int passoX, int passoY) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(regiao);
+        param.setSourceSubsampling(passoX, passoY, 0, 0);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Decodifica uma versão reduzida com o maior lado próximo de {@code ladoMaximo}: um pixel a cada
+     * {@link #passoSubamostragem} colunas e linhas, a partir do canto superior esquerdo.
+     */
+    public BufferedImage lerSubamostrada(int ladoMaximo) throws IOException {
+        int passo = passoSubamostragem(largura(), altura(), ladoMaximo);
+        if (passo == 1) return lerCompleta();
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(passo, passo, 0, 0);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Passo de {@link #lerSubamostrada}; quem já tem a imagem inteira decodificada usa o mesmo passo
+     * para ler exatamente os mesmos pixels.
+     */
+    public static int passoSubamostragem(int largura, int altura, int ladoMaximo) {
+        int maiorLado = Math.max(largura, altura);
+        return Math.max(1, (maiorLado + ladoMaximo - 1) / ladoMaximo);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        stream.close();
+    }
+
+    /** {@link ImageInputStream} sobre um {@link ByteBuffer}, com busca direta em qualquer posição. */
+    private static final class EntradaBuffer extends ImageInputStreamImpl {
+
+        private final ByteBuffer buffer;
+
+        EntradaBuffer(ByteBuffer conteudo) {
+            this.buffer = conteudo.slice();
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= buffer.limit()) return -1;
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] destino, int inicio, int tamanho) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (tamanho == 0) return 0;
+            int restante = buffer.limit() - (int) Math.min(streamPos, buffer.limit());
+            if (restante == 0) return -1;
+            int n = Math.min(tamanho, restante);
+            buffer.get((int) streamPos, destino, inicio, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Divide as permissões de CPU entre os classificadores de um processo por tempo de uso ponderado
+ * (weighted fair queueing): quando uma permissão fica livre, ela vai para a fila com espera que
+ * acumulou menos {@code tempo de CPU / peso}.
+ *
+ * Assim o custo real de cada mensagem conta: um backlog de faces, que gastam muito mais por
+ * mensagem, não impede que os times continuem sendo atendidos, e com pesos iguais cada fila
+ * ocupada recebe a mesma fatia de CPU. Uma fila que ficou ociosa volta no tempo virtual atual, sem
+ * crédito acumulado. Sem disputa (permissões livres e ninguém esperando) a aquisição é imediata.
+ */
+public final class EscalonadorJusto {
+
+    private final ReentrantLock trava = new ReentrantLock();
+    private final List<Fila> filas = new ArrayList<>();
+    private final int permissoes;
+    private int livres;
+    private int esperando;
+    // Tempo virtual da última fila atendida; referência para as filas que voltam da ociosidade
+    private double tempoVirtualAtual;
+
+    public EscalonadorJusto(int permissoes) {
+        this.permissoes = Math.max(1, permissoes);
+        this.livres = this.permissoes;
+    }
+
+    public int permissoes() {
+        return permissoes;
+    }
+
+    /** Cria a fila de um classificador; {@code peso} maior recebe uma fatia maior da CPU. */
+    public Fila registrar(String nome, int peso) {
+        trava.lock();
+        try {
+            Fila fila = new Fila(nome, Math.max(1, peso));
+            filas.add(fila);
+            return fila;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /** A vez de um classificador nas permissões compartilhadas. */
+    public final class Fila {
+
+        private final String nome;
+        private final int peso;
+        private final Condition vez = trava.newCondition();
+        private double tempoVirtual;
+        private int esperandoNaFila;
+        private int emUso;
+
+        private Fila(String nome, int peso) {
+            this.nome = nome;
+            this.peso = peso;
+        }
+
+        public String nome() {
+            return nome;
+        }
+
+        public int peso() {
+            return peso;
+        }
+
+        /**
+         * Espera uma permissão (sem ser interrompida, como {@code Semaphore.acquireUninterruptibly})
+         * e devolve o {@link System#nanoTime()} do início do uso, a ser passado para {@link #liberar}.
+         */
+        public long adquirir() {
+            trava.lock();
+            try {
+                if (esperandoNaFila == 0 && emUso == 0) {
+                    tempoVirtual = Math.max(tempoVirtual, tempoVirtualAtual);
+                }
+                if (livres > 0 && esperando == 0) {
+                    livres--;
+                    emUso++;
+                    return System.nanoTime();
+                }
+                esperando++;
+                esperandoNaFila++;
+                boolean interrompida = false;
+                while (livres == 0 || escolhida() != this) {
+                    // Acordada sem ser a vez desta fila (o tempo virtual mudou): o sinal passa para a fila certa
+                    acordarProxima();
+                    try {
+                        vez.await();
+                    } catch (InterruptedException e) {
+                        interrompida = true;
+                    }
+                }
+                esperando--;
+                esperandoNaFila--;
+                livres--;
+                emUso++;
+                tempoVirtualAtual = tempoVirtual;
+                // Ainda há permissões: a próxima fila da vez pode seguir também
+                acordarProxima();
+                if (interrompida) Thread.currentThread().interrupt();
+                return System.nanoTime();
+            } finally {
+                trava.unlock();
+            }
+        }
+
+        /** Devolve a permissão e cobra desta fila o tempo em que ela foi usada. */
+        public void liberar(long inicioNs) {
+            long usoNs = Math.max(0, System.nanoTime() - inicioNs);
+            trava.lock();
+            try {
+                tempoVirtual += (double) usoNs / peso;
+                emUso--;
+                livres++;
+                acordarProxima();
+            } finally {
+                trava.unlock();
+            }
+        }
+    }
+
+    /** Fila com espera de menor tempo virtual (a primeira registrada em caso de empate), ou null. */
+    private Fila escolhida() {
+        Fila escolhida = null;
+        for (Fila fila : filas) {
+            if (fila.esperandoNaFila > 0 && (escolhida == null || fila.tempoVirtual < escolhida.tempoVirtual)) {
+                escolhida = fila;
+            }
+        }
+        return escolhida;
+    }
+
+    private void acordarProxima() {
+        if (livres == 0) return;
+        Fila proxima = escolhida();
+        if (proxima != null) proxima.vez.signal();
+    }
+}
@@ -0,0 +1,251 @@
+package com.example;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Estágio de saída assíncrono: codifica e grava as imagens (anotadas ou originais) em threads próprias.
+ *
+ * Bytes já codificados (a imagem recebida, eventualmente com um bloco de metadados intercalado) vão
+ * para o disco por um {@link FileChannel} em uma única escrita com vários buffers, sem cópia para um
+ * array novo.
+ *
+ * A fila é limitada, então quando o disco não acompanha, {@link #enviar} bloqueia o consumidor
+ * (backpressure) em vez de acumular imagens na memória. O callback de cada tarefa (o ack da
+ * mensagem) só roda depois que o arquivo foi fechado e, se configurado, sincronizado com fsync;
+ * se a codificação, a escrita ou o fsync falharem, roda o callback de falha no lugar dele.
+ */
+public class GravadorImagens {
+
+    private static final class Tarefa {
+        final BufferedImage imagem;
+        final String formato;
+        final ByteBuffer[] partes;
+        final File destino;
+        final Consumer<byte[]> aoCodificar;
+        final Runnable aoConcluir;
+        final Consumer<Exception> aoFalhar;
+        final Metricas metricas;
+
+        Tarefa(BufferedImage imagem, String formato, ByteBuffer[] partes, File destino,
+               Consumer<byte[]> aoCodificar, Runnable aoConcluir, Consumer<Exception> aoFalhar, Metricas metricas) {
+            this.imagem = imagem;
+            this.formato = formato;
+            this.partes = partes;
+            this.destino = destino;
+            this.aoCodificar = aoCodificar;
+            this.aoConcluir = aoConcluir;
+            this.aoFalhar = aoFalhar;
+            this.metricas = metricas;
+        }
+    }
+
+    private final BlockingQueue<Tarefa> fila;
+    private final int loteFsync;
+    private final RegistroAssincrono log;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean ativo = true;
+
+    /**
+     * @param numThreads   threads de codificação/gravação
+     * @param capacidade   tamanho máximo da fila de imagens aguardando gravação
+     * @param loteFsync    0 desliga o fsync; n agrupa até n arquivos por rodada de fsync
+     * @param log          erros dos callbacks das tarefas
+     */
+    public GravadorImagens(int numThreads, int capacidade, int loteFsync, RegistroAssincrono log) {
+        this.fila = new ArrayBlockingQueue<>(Math.max(1, capacidade));
+        this.loteFsync = Math.max(0, loteFsync);
+        this.log = log;
+        for (int i = 0; i < Math.max(1, numThreads); i++) {
+            Thread t = new Thread(this::executar, "gravador-" + i);
+            t.start();
+            threads.add(t);
+        }
+    }
+
+    /**
+     * Enfileira a codificação e a gravação de uma imagem; bloqueia enquanto a fila estiver cheia.
+     * Os bytes codificados também vão para {@code aoCodificar} (por exemplo, para o cache de
+     * resultados) e os tempos desta imagem para {@code metricasDaTarefa}, o que permite que
+     * consumidores diferentes dividam as mesmas threads de gravação.
+     *
+     * @param aoConcluir  roda quando o arquivo estiver gravado (e sincronizado, com fsync)
+     * @param aoFalhar    roda no lugar de {@code aoConcluir} se a imagem não chegou ao disco
+     */
+    public void enviar(BufferedImage imagem, String formato, File destino, Consumer<byte[]> aoCodificar,
+                       Runnable aoConcluir, Consumer<Exception> aoFalhar, Metricas metricasDaTarefa) throws InterruptedException {
+        fila.put(new Tarefa(imagem, formato, null, destino, aoCodificar, aoConcluir, aoFalhar, metricasDaTarefa));
+    }
+
+    /**
+     * Enfileira a gravação de um arquivo formado pelas {@code partes} em sequência (por exemplo,
+     * as fatias da imagem original em volta de um bloco de metadados; veja {@link MetadadosImagem}).
+     */
+    public void enviarPartes(ByteBuffer[] partes, File destino, Runnable aoConcluir, Consumer<Exception> aoFalhar,
+                             Metricas metricasDaTarefa) throws InterruptedException {
+        fila.put(new Tarefa(null, null, partes, destino, null, aoConcluir, aoFalhar, metricasDaTarefa));
+    }
+
+    /**
+     * Para de aceitar tarefas e aguarda a gravação do que já estava na fila.
+     */
+    public void encerrar() throws InterruptedException {
+        ativo = false;
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+
+    private void executar() {
+        List<Tarefa> lote = new ArrayList<>();
+        List<FileChannel> abertos = new ArrayList<>();
+        List<Tarefa> tarefasAbertas = new ArrayList<>();
+        while (ativo || !fila.isEmpty()) {
+            Tarefa primeira;
+            try {
+                primeira = fila.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Nada foi retirado da fila: as tarefas pendentes continuam lá e nenhuma é confirmada
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (primeira == null) continue;
+            lote.add(primeira);
+            if (loteFsync > 1) {
+                fila.drainTo(lote, loteFsync - 1);
+            }
+
+            // Cada tarefa termina exatamente uma vez: concluída quando está no disco, ou com falha
+            for (Tarefa tarefa : lote) {
+                try {
+                    FileChannel out = gravar(tarefa);
+                    if (out == null) {
+                        concluir(tarefa);
+                    } else {
+                        abertos.add(out);
+                        tarefasAbertas.add(tarefa);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    falhar(tarefa, e);
+                }
+            }
+            // Um único fsync por arquivo do lote, depois que todos já foram codificados
+            for (int i = 0; i < abertos.size(); i++) {
+                Tarefa tarefa = tarefasAbertas.get(i);
+                try {
+                    fecharComFsync(abertos.get(i), tarefa.metricas);
+                    concluir(tarefa);
+                } catch (IOException | RuntimeException e) {
+                    falhar(tarefa, e);
+                }
+            }
+            lote.clear();
+            abertos.clear();
+            tarefasAbertas.clear();
+        }
+    }
+
+    /**
+     * Codifica a imagem no arquivo de destino. Sem fsync o arquivo já é fechado aqui e o retorno é
+     * null; com fsync o canal é devolvido aberto para ser sincronizado junto com o resto do lote.
+     */
+    private FileChannel gravar(Tarefa tarefa) throws IOException {
+        ByteBuffer[] partes = tarefa.partes;
+        if (partes == null) {
+            // Codifica em memória para que os mesmos bytes possam ir para o disco e para o cache
+            long inicio = System.nanoTime();
+            ByteArrayOutputStream codificada = new ByteArrayOutputStream();
+            if (!ImageIO.write(tarefa.imagem, tarefa.formato, codificada)) {
+                throw new IOException("nenhum codificador '" + tarefa.formato + "' aceitou a imagem");
+            }
+            byte[] bytes = codificada.toByteArray();
+            registrar(tarefa.metricas, Metricas.Etapa.CODIFICACAO, inicio);
+            if (tarefa.aoCodificar != null && bytes.length > 0) {
+                tarefa.aoCodificar.accept(bytes);
+            }
+            partes = new ByteBuffer[]{ByteBuffer.wrap(bytes)};
+        }
+        long inicio = System.nanoTime();
+        FileChannel out = FileChannel.open(tarefa.destino.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            escreverTudo(out, partes);
+            if (loteFsync > 0) {
+                registrar(tarefa.metricas, Metricas.Etapa.GRAVACAO, inicio);
+                return out;
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            fecharSilenciosamente(out);
+            throw e;
+        }
+        registrar(tarefa.metricas, Metricas.Etapa.GRAVACAO, inicio);
+        return null;
+    }
+
+    /** Escrita com vários buffers; repete enquanto sobrar algo, já que o canal pode escrever menos. */
+    private static void escreverTudo(FileChannel out, ByteBuffer[] partes) throws IOException {
+        // Cada tarefa recebe visões próprias: os buffers de origem (por exemplo, o corpo da mensagem) não mudam de posição
+        ByteBuffer[] visoes = new ByteBuffer[partes.length];
+        long restante = 0;
+        for (int i = 0; i < partes.length; i++) {
+            visoes[i] = partes[i].duplicate();
+            restante += visoes[i].remaining();
+        }
+        while (restante > 0) {
+            restante -= out.write(visoes);
+        }
+    }
+
+    private static void registrar(Metricas metricas, Metricas.Etapa etapa, long inicioNs) {
+        if (metricas != null) {
+            metricas.registrar(etapa, inicioNs);
+        }
+    }
+
+    private static void fecharComFsync(FileChannel out, Metricas metricas) throws IOException {
+        try {
+            long inicio = System.nanoTime();
+            out.force(true);
+            registrar(metricas, Metricas.Etapa.FSYNC, inicio);
+        } finally {
+            fecharSilenciosamente(out);
+        }
+    }
+
+    private static void fecharSilenciosamente(FileChannel out) {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void concluir(Tarefa tarefa) {
+        try {
+            tarefa.aoConcluir.run();
+        } catch (RuntimeException e) {
+            log.erro("falha ao concluir a gravação de " + tarefa.destino.getName(), e);
+        }
+    }
+
+    private void falhar(Tarefa tarefa, Exception erro) {
+        try {
+            tarefa.aoFalhar.accept(new IOException("Erro ao gravar imagem " + tarefa.destino.getName() + ": " + erro.getMessage(), erro));
+        } catch (RuntimeException e) {
+            log.erro("falha ao tratar o erro de gravação de " + tarefa.destino.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Índice ao lado das imagens gravadas: uma linha {@code arquivo<TAB>rotulo<TAB>message_id} por
+ * imagem, acrescentada depois que o arquivo foi escrito. Permite gravar as imagens originais sem
+ * tocar nos bytes e ainda saber a classificação de cada uma.
+ */
+public final class IndiceRotulos {
+
+    private final FileChannel canal;
+    private final RegistroAssincrono log;
+
+    public IndiceRotulos(Path arquivo, RegistroAssincrono log) throws IOException {
+        this.log = log;
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public void registrar(String arquivo, String rotulo, Object idMensagem) {
+        String linha = arquivo + '\t' + rotulo + '\t' + (idMensagem == null ? "-" : idMensagem) + '\n';
+        ByteBuffer buffer = ByteBuffer.wrap(linha.getBytes(StandardCharsets.UTF_8));
+        // Uma linha por vez, para que gravadores concorrentes não intercalem bytes
+        synchronized (this) {
+            try {
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer);
+                }
+            } catch (IOException e) {
+                log.aviso("não foi possível registrar " + arquivo + " no índice de rótulos: " + e.getMessage());
+            }
+        }
+    }
+}
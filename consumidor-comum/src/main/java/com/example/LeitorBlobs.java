@@ -0,0 +1,53 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Lado consumidor do claim-check do gerador: mensagens com o header {@code blob_sha256} chegam com
+ * o corpo vazio e a imagem está em {@code <dir>/<2 primeiros hex>/<sha256>} no armazém compartilhado.
+ *
+ * O arquivo é mapeado em memória, então a imagem passa do page cache direto para o decodificador
+ * e para o gravador sem ocupar o heap nem os frames do broker.
+ */
+public final class LeitorBlobs {
+
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path diretorio;
+
+    public LeitorBlobs(Path diretorio) {
+        this.diretorio = diretorio;
+    }
+
+    /** Id do blob referenciado pela mensagem, ou null se a imagem veio no corpo. */
+    public static String referencia(Map<String, Object> headers) {
+        Object id = headers != null ? headers.get("blob_sha256") : null;
+        return id != null ? id.toString() : null;
+    }
+
+    /**
+     * Mapeia o blob só para leitura.
+     *
+     * @param tamanhoEsperado  o {@code blob_tamanho} da mensagem; negativo não confere
+     * @throws IOException se o id for inválido, o arquivo não existir ou tiver outro tamanho
+     */
+    public ByteBuffer abrir(String id, long tamanhoEsperado) throws IOException {
+        // O id vira caminho: só hex, para que um header não aponte para fora do armazém
+        if (!ID.matcher(id).matches()) throw new IOException("referência de blob inválida: " + id);
+        Path arquivo = diretorio.resolve(id.substring(0, 2)).resolve(id);
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanhoEsperado >= 0 && tamanho != tamanhoEsperado) {
+                throw new IOException("blob " + id + " com " + tamanho + " bytes, esperados " + tamanhoEsperado);
+            }
+            if (tamanho > Integer.MAX_VALUE) throw new IOException("blob " + id + " grande demais para mapear");
+            return canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Log dos resultados de classificação: registros de tamanho fixo acrescentados a segmentos mapeados
+ * em memória, com um segmento novo quando o atual enche.
+ *
+ * Cada segmento ({@code 0000000001.seg}, ...) tem um cabeçalho de {@value #CABECALHO} bytes e
+ * espaço para uma quantidade fixa de registros de {@value #TAMANHO_REGISTRO} bytes. O marcador no
+ * fim do registro é escrito por último, então um leitor (outro processo, inclusive com o consumidor
+ * rodando) ignora registros incompletos. Consultas como as de {@link ConsultaResultados} leem só
+ * estes arquivos, sem abrir as imagens.
+ *
+ * Layout do registro (big-endian):
+ * <pre>
+ *   0 long  instante da conclusão (µs desde a época)      48 int  fila (µs)
+ *   8 long  publicado_em_us do gerador (0 se ausente)      52 int  decodificação (µs)
+ *  16 long  hash do nome do arquivo                        56 int  extração (µs)
+ *  24 long  hash do conteúdo da imagem                     60 int  predição (µs)
+ *  32 int   rótulo                                         64 int  anotação (µs)
+ *  36 float fração dos vizinhos com o rótulo (NaN: cache)  68 int  ponta a ponta (µs)
+ *  40 float distância ao vizinho mais próximo              72 byte flags (1 = veio do cache)
+ *  44 int   tamanho da imagem em bytes                     73 byte tamanho do nome do rótulo
+ *                                                          74 byte tamanho do message_id
+ *  76 byte[24] nome do rótulo (UTF-8)    100 byte[24] message_id    124 int marcador
+ * </pre>
+ */
+public final class LogResultados {
+
+    static final int TAMANHO_REGISTRO = 128;
+    static final int CABECALHO = 64;
+    static final int MAGICO_SEGMENTO = 0x43494152; // "CIAR"
+    static final int VERSAO = 1;
+    static final int MARCADOR = 0x52455331;
+
+    private static final int MAX_TEXTO = 24;
+    private static final String EXTENSAO = ".seg";
+
+    /** Um registro lido do log. */
+    public static final class Registro {
+        public long instanteUs;
+        public long publicadoEmUs;
+        public long hashArquivo;
+        public long hashConteudo;
+        public int rotulo;
+        public float confianca;
+        public float distancia;
+        public int tamanhoBytes;
+        public int filaUs;
+        public int decodificacaoUs;
+        public int extracaoUs;
+        public int predicaoUs;
+        public int anotacaoUs;
+        public int pontaAPontaUs;
+        public boolean doCache;
+        public String nomeRotulo;
+        public String idMensagem;
+    }
+
+    private final Path diretorio;
+    private final int registrosPorSegmento;
+    private final int maxSegmentos;
+    private final RegistroAssincrono log;
+
+    private long segmentoAtual;
+    private MappedByteBuffer mapa;
+    private int proximo;
+
+    /**
+     * @param segmentoBytes  tamanho de cada segmento
+     * @param maxSegmentos   segmentos mantidos (os mais antigos são apagados); 0 mantém todos
+     * @param log            falhas ao abrir segmentos novos
+     */
+    public LogResultados(Path diretorio, long segmentoBytes, int maxSegmentos, RegistroAssincrono log) throws IOException {
+        this.diretorio = diretorio;
+        this.log = log;
+        this.registrosPorSegmento = (int) Math.max(1, Math.min(Integer.MAX_VALUE / TAMANHO_REGISTRO - 1,
+                (segmentoBytes - CABECALHO) / TAMANHO_REGISTRO));
+        this.maxSegmentos = Math.max(0, maxSegmentos);
+        Files.createDirectories(diretorio);
+
+        // Continua no último segmento, a partir do primeiro registro vazio
+        List<Path> existentes = segmentos(diretorio);
+        if (existentes.isEmpty()) {
+            abrirSegmento(1);
+        } else {
+            Path ultimo = existentes.get(existentes.size() - 1);
+            long numero = numeroDoSegmento(ultimo);
+            abrirSegmento(numero);
+            int capacidade = mapa.getInt(12);
+            proximo = 0;
+            while (proximo < capacidade && mapa.getInt(posicao(proximo) + 124) == MARCADOR) {
+                proximo++;
+            }
+            if (proximo >= capacidade) abrirSegmento(numero + 1);
+        }
+    }
+
+    /** Acrescenta um resultado. Nomes e ids maiores que 24 bytes são truncados. */
+    public synchronized void registrar(long instanteUs, long publicadoEmUs, long hashArquivo, long hashConteudo,
+                                       int rotulo, String nomeRotulo, float confianca, float distancia, int tamanhoBytes,
+                                       boolean doCache, long filaUs, long decodificacaoUs, long extracaoUs,
+                                       long predicaoUs, long anotacaoUs, long pontaAPontaUs, Object idMensagem) {
+        if (mapa == null) return;
+        if (proximo >= registrosPorSegmento) {
+            try {
+                rolar();
+            } catch (IOException e) {
+                log.aviso("não foi possível abrir um segmento novo do log de resultados: " + e.getMessage());
+                return;
+            }
+        }
+        int p = posicao(proximo++);
+        mapa.putLong(p, instanteUs);
+        mapa.putLong(p + 8, publicadoEmUs);
+        mapa.putLong(p + 16, hashArquivo);
+        mapa.putLong(p + 24, hashConteudo);
+        mapa.putInt(p + 32, rotulo);
+        mapa.putFloat(p + 36, confianca);
+        mapa.putFloat(p + 40, distancia);
+        mapa.putInt(p + 44, tamanhoBytes);
+        mapa.putInt(p + 48, saturar(filaUs));
+        mapa.putInt(p + 52, saturar(decodificacaoUs));
+        mapa.putInt(p + 56, saturar(extracaoUs));
+        mapa.putInt(p + 60, saturar(predicaoUs));
+        mapa.putInt(p + 64, saturar(anotacaoUs));
+        mapa.putInt(p + 68, saturar(pontaAPontaUs));
+        mapa.put(p + 72, (byte) (doCache ? 1 : 0));
+        mapa.put(p + 73, (byte) escreverTexto(p + 76, nomeRotulo));
+        mapa.put(p + 74, (byte) escreverTexto(p + 100, idMensagem == null ? "" : idMensagem.toString()));
+        mapa.putInt(p + 124, MARCADOR);
+    }
+
+    /** Força o segmento atual para o disco; registros posteriores são ignorados. */
+    public synchronized void fechar() {
+        if (mapa == null) return;
+        mapa.force();
+        mapa = null;
+    }
+
+    private int escreverTexto(int posicao, String texto) {
+        byte[] bytes = texto == null ? new byte[0] : texto.getBytes(StandardCharsets.UTF_8);
+        int tamanho = Math.min(bytes.length, MAX_TEXTO);
+        // Sem cortar um caractere UTF-8 no meio
+        while (tamanho < bytes.length && tamanho > 0 && (bytes[tamanho] & 0xC0) == 0x80) tamanho--;
+        for (int i = 0; i < tamanho; i++) {
+            mapa.put(posicao + i, bytes[i]);
+        }
+        return tamanho;
+    }
+
+    private static int saturar(long micros) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, micros));
+    }
+
+    private static int posicao(int indice) {
+        return CABECALHO + indice * TAMANHO_REGISTRO;
+    }
+
+    private void rolar() throws IOException {
+        // O segmento cheio vai para o disco antes de ser deixado de lado
+        mapa.force();
+        abrirSegmento(segmentoAtual + 1);
+        if (maxSegmentos > 0) {
+            List<Path> existentes = segmentos(diretorio);
+            for (int i = 0; i < existentes.size() - maxSegmentos; i++) {
+                Files.deleteIfExists(existentes.get(i));
+            }
+        }
+    }
+
+    private void abrirSegmento(long numero) throws IOException {
+        Path arquivo = diretorio.resolve(String.format("%010d", numero) + EXTENSAO);
+        boolean novo = !Files.exists(arquivo);
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int capacidade = novo ? registrosPorSegmento : lerCapacidade(canal);
+            mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, CABECALHO + (long) capacidade * TAMANHO_REGISTRO);
+            if (novo) {
+                mapa.putInt(0, MAGICO_SEGMENTO);
+                mapa.putInt(4, VERSAO);
+                mapa.putInt(8, TAMANHO_REGISTRO);
+                mapa.putInt(12, capacidade);
+                mapa.putLong(16, Metricas.agoraEpocaUs());
+            }
+        }
+        segmentoAtual = numero;
+        proximo = 0;
+    }
+
+    private static int lerCapacidade(FileChannel canal) throws IOException {
+        ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO);
+        while (cabecalho.hasRemaining() && canal.read(cabecalho, cabecalho.position()) > 0) {
+            // lê até completar o cabeçalho
+        }
+        if (cabecalho.getInt(0) != MAGICO_SEGMENTO || cabecalho.getInt(8) != TAMANHO_REGISTRO) {
+            throw new IOException("segmento com formato desconhecido");
+        }
+        return cabecalho.getInt(12);
+    }
+
+    /** Segmentos do diretório em ordem. */
+    static List<Path> segmentos(Path diretorio) throws IOException {
+        List<Path> arquivos = new ArrayList<>();
+        if (!Files.isDirectory(diretorio)) return arquivos;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diretorio, "*" + EXTENSAO)) {
+            for (Path arquivo : stream) {
+                arquivos.add(arquivo);
+            }
+        }
+        Collections.sort(arquivos);
+        return arquivos;
+    }
+
+    private static long numeroDoSegmento(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        return Long.parseLong(nome.substring(0, nome.length() - EXTENSAO.length()));
+    }
+
+    /**
+     * Percorre todos os registros completos do diretório, do segmento mais antigo ao mais novo,
+     * reutilizando o mesmo {@link Registro} a cada chamada.
+     */
+    public static void ler(Path diretorio, Consumer<Registro> consumidor) throws IOException {
+        Registro r = new Registro();
+        byte[] texto = new byte[MAX_TEXTO];
+        for (Path arquivo : segmentos(diretorio)) {
+            try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                if (canal.size() < CABECALHO) continue;
+                MappedByteBuffer m = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                if (m.getInt(0) != MAGICO_SEGMENTO || m.getInt(8) != TAMANHO_REGISTRO) {
+                    System.err.println("AVISO: ignorando " + arquivo + " (formato desconhecido)");
+                    continue;
+                }
+                int capacidade = (int) Math.min(m.getInt(12), (canal.size() - CABECALHO) / TAMANHO_REGISTRO);
+                for (int i = 0; i < capacidade; i++) {
+                    int p = posicao(i);
+                    // Registros ainda sendo escritos (ou o espaço livre do segmento atual) não têm o marcador
+                    if (m.getInt(p + 124) != MARCADOR) continue;
+                    r.instanteUs = m.getLong(p);
+                    r.publicadoEmUs = m.getLong(p + 8);
+                    r.hashArquivo = m.getLong(p + 16);
+                    r.hashConteudo = m.getLong(p + 24);
+                    r.rotulo = m.getInt(p + 32);
+                    r.confianca = m.getFloat(p + 36);
+                    r.distancia = m.getFloat(p + 40);
+                    r.tamanhoBytes = m.getInt(p + 44);
+                    r.filaUs = m.getInt(p + 48);
+                    r.decodificacaoUs = m.getInt(p + 52);
+                    r.extracaoUs = m.getInt(p + 56);
+                    r.predicaoUs = m.getInt(p + 60);
+                    r.anotacaoUs = m.getInt(p + 64);
+                    r.pontaAPontaUs = m.getInt(p + 68);
+                    r.doCache = m.get(p + 72) != 0;
+                    r.nomeRotulo = lerTexto(m, p + 76, m.get(p + 73), texto);
+                    r.idMensagem = lerTexto(m, p + 100, m.get(p + 74), texto);
+                    consumidor.accept(r);
+                }
+            }
+        }
+    }
+
+    private static String lerTexto(MappedByteBuffer m, int posicao, byte tamanho, byte[] destino) {
+        int n = Math.min(MAX_TEXTO, tamanho & 0xFF);
+        m.get(posicao, destino, 0, n);
+        return new String(destino, 0, n, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Grava um texto nos metadados de um PNG ou JPEG sem decodificar nem recodificar a imagem.
+ *
+ * O arquivo é percorrido só até o ponto de inserção: no PNG, logo depois do {@code IHDR} (que
+ * precisa ser o primeiro chunk), entra um chunk {@code tEXt}; no JPEG, depois do SOI e dos
+ * segmentos {@code APPn} (JFIF/EXIF continuam no início), entra um segmento {@code COM}. O
+ * resultado são fatias da imagem original em volta do bloco novo, prontas para uma escrita com
+ * vários buffers. Outros formatos, ou arquivos que não seguem a estrutura esperada, saem inalterados.
+ */
+public final class MetadadosImagem {
+
+    private static final byte[] ASSINATURA_PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int MAX_COMENTARIO_JPEG = 0xFFFF - 2;
+
+    private MetadadosImagem() {
+    }
+
+    /**
+     * @param chave  palavra-chave do {@code tEXt} no PNG; no JPEG o comentário fica {@code chave=valor}
+     * @return as partes do arquivo com o metadado inserido, ou a imagem inteira se não houver onde inserir
+     */
+    public static ByteBuffer[] comTexto(byte[] imagem, String chave, String valor) {
+        return comTexto(ByteBuffer.wrap(imagem), chave, valor);
+    }
+
+    /** Como {@link #comTexto(byte[], String, String)}, com a imagem num buffer (posição até o limite). */
+    public static ByteBuffer[] comTexto(ByteBuffer conteudo, String chave, String valor) {
+        ByteBuffer imagem = conteudo.slice();
+        int posicao = fimDoIhdrPng(imagem);
+        byte[] bloco = null;
+        if (posicao > 0) {
+            bloco = chunkTexto(chave, valor);
+        } else {
+            posicao = fimDosAppJpeg(imagem);
+            if (posicao > 0) bloco = segmentoComentario(chave + "=" + valor);
+        }
+        if (bloco == null) return new ByteBuffer[]{imagem};
+        return new ByteBuffer[]{
+                imagem.slice(0, posicao),
+                ByteBuffer.wrap(bloco),
+                imagem.slice(posicao, imagem.limit() - posicao)
+        };
+    }
+
+    /** Posição logo depois do chunk {@code IHDR}, ou -1 se não for um PNG com IHDR no início. */
+    static int fimDoIhdrPng(ByteBuffer b) {
+        if (b.limit() < 8 + 12) return -1;
+        for (int i = 0; i < ASSINATURA_PNG.length; i++) {
+            if (b.get(i) != ASSINATURA_PNG[i]) return -1;
+        }
+        long tamanho = b.getInt(8) & 0xFFFFFFFFL;
+        if (b.get(12) != 'I' || b.get(13) != 'H' || b.get(14) != 'D' || b.get(15) != 'R') return -1;
+        long fim = 8 + 12 + tamanho;
+        return fim <= b.limit() ? (int) fim : -1;
+    }
+
+    /** Posição depois do SOI e dos segmentos APPn iniciais, ou -1 se não for um JPEG. */
+    static int fimDosAppJpeg(ByteBuffer b) {
+        if (b.limit() < 4 || (b.get(0) & 0xFF) != 0xFF || (b.get(1) & 0xFF) != 0xD8) return -1;
+        int pos = 2;
+        while (pos + 4 <= b.limit() && (b.get(pos) & 0xFF) == 0xFF
+                && (b.get(pos + 1) & 0xFF) >= 0xE0 && (b.get(pos + 1) & 0xFF) <= 0xEF) {
+            int tamanho = b.getShort(pos + 2) & 0xFFFF;
+            if (tamanho < 2 || pos + 2 + tamanho > b.limit()) return -1;
+            pos += 2 + tamanho;
+        }
+        return pos;
+    }
+
+    private static byte[] chunkTexto(String chave, String valor) {
+        // tEXt: palavra-chave Latin-1 (1 a 79 caracteres), separador nulo e o texto
+        byte[] palavra = chave.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] texto = valor.getBytes(StandardCharsets.ISO_8859_1);
+        int tamanhoDados = palavra.length + 1 + texto.length;
+        ByteBuffer chunk = ByteBuffer.allocate(12 + tamanhoDados);
+        chunk.putInt(tamanhoDados);
+        chunk.put(new byte[]{'t', 'E', 'X', 't'});
+        chunk.put(palavra).put((byte) 0).put(texto);
+        // CRC sobre o tipo e os dados
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, 4 + tamanhoDados);
+        chunk.putInt((int) crc.getValue());
+        return chunk.array();
+    }
+
+    private static byte[] segmentoComentario(String comentario) {
+        byte[] texto = comentario.getBytes(StandardCharsets.UTF_8);
+        int tamanho = Math.min(texto.length, MAX_COMENTARIO_JPEG);
+        ByteBuffer segmento = ByteBuffer.allocate(4 + tamanho);
+        segmento.put((byte) 0xFF).put((byte) 0xFE).putShort((short) (2 + tamanho));
+        segmento.put(texto, 0, tamanho);
+        return segmento.array();
+    }
+}
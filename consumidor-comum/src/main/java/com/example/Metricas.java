@@ -0,0 +1,223 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.ConcurrentHistogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Latência por etapa do pipeline (histogramas HdrHistogram em microssegundos) e contadores de
+ * vazão, expostos em {@code /metrics} no formato texto do Prometheus.
+ *
+ * Os percentis são acumulados desde a inicialização; {@code _sum} e {@code _count} permitem que o
+ * Prometheus calcule médias e taxas em qualquer janela. Registrar um valor não bloqueia as outras threads.
+ */
+public final class Metricas {
+
+    public enum Etapa {
+        /** Da publicação (header {@code publicado_em_us}) até a entrega ao consumidor. */
+        FILA("fila"),
+        DECODIFICACAO("decodificacao"),
+        EXTRACAO("extracao"),
+        /** Uma chamada ao modelo, que pode classificar um lote inteiro. */
+        PREDICAO("predicao"),
+        ANOTACAO("anotacao"),
+        /** {@code ImageIO.write} da imagem anotada. */
+        CODIFICACAO("codificacao"),
+        GRAVACAO("gravacao"),
+        FSYNC("fsync"),
+        /** Da publicação até o ack. */
+        PONTA_A_PONTA("ponta_a_ponta");
+
+        final String nome;
+
+        Etapa(String nome) {
+            this.nome = nome;
+        }
+    }
+
+    public static final String HEADER_PUBLICADO_EM = "publicado_em_us";
+
+    private static final double[] QUANTIS = {0.5, 0.9, 0.99, 0.999};
+
+    private static final class Contador {
+        final String nome;
+        final String ajuda;
+        final LongSupplier valor;
+
+        Contador(String nome, String ajuda, LongSupplier valor) {
+            this.nome = nome;
+            this.ajuda = ajuda;
+            this.valor = valor;
+        }
+    }
+
+    private final String consumidor;
+    private final ConcurrentHistogram[] histogramas = new ConcurrentHistogram[Etapa.values().length];
+    private final LongAdder[] somas = new LongAdder[Etapa.values().length];
+    private final List<Contador> contadores = new ArrayList<>();
+
+    private final LongAdder mensagens = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final LongAdder bytesRecebidos = new LongAdder();
+
+    public Metricas(String consumidor) {
+        this.consumidor = consumidor;
+        for (Etapa etapa : Etapa.values()) {
+            histogramas[etapa.ordinal()] = new ConcurrentHistogram(3);
+            somas[etapa.ordinal()] = new LongAdder();
+        }
+        registrarContador("carga_ia_mensagens_total", "Mensagens concluídas (gravadas e confirmadas)", mensagens::sum);
+        registrarContador("carga_ia_erros_total", "Mensagens que falharam e foram confirmadas sem resultado", erros::sum);
+        registrarContador("carga_ia_bytes_recebidos_total", "Bytes de imagem recebidos da fila", bytesRecebidos::sum);
+    }
+
+    /** Microssegundos desde a época, no mesmo relógio usado pelo gerador no header {@code publicado_em_us}. */
+    public static long agoraEpocaUs() {
+        Instant agora = Instant.now();
+        return agora.getEpochSecond() * 1_000_000L + agora.getNano() / 1000;
+    }
+
+    /** Instante de publicação gravado pelo gerador nos headers da mensagem, ou 0 se ausente ou inválido. */
+    public static long publicadoEmUs(Map<String, Object> headers) {
+        Object valor = headers == null ? null : headers.get(HEADER_PUBLICADO_EM);
+        if (valor instanceof Number) return ((Number) valor).longValue();
+        if (valor == null) return 0;
+        try {
+            return Long.parseLong(valor.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Registra e devolve o tempo decorrido (µs) desde {@code inicioNs} (um {@link System#nanoTime()}). */
+    public long registrar(Etapa etapa, long inicioNs) {
+        return registrarMicros(etapa, (System.nanoTime() - inicioNs) / 1000);
+    }
+
+    /** Registra o tempo decorrido desde um instante em microssegundos da época; ignora instantes ausentes (0). */
+    public long registrarDesdeEpoca(Etapa etapa, long epocaUs) {
+        if (epocaUs <= 0) return 0;
+        return registrarMicros(etapa, agoraEpocaUs() - epocaUs);
+    }
+
+    public long registrarMicros(Etapa etapa, long micros) {
+        // Relógios de máquinas diferentes podem dar diferenças negativas
+        long valor = Math.max(0, micros);
+        histogramas[etapa.ordinal()].recordValue(valor);
+        somas[etapa.ordinal()].add(valor);
+        return valor;
+    }
+
+    public void mensagemConcluida() {
+        mensagens.increment();
+    }
+
+    public void erro() {
+        erros.increment();
+    }
+
+    /** Mensagens concluídas mais as que falharam: todas as que já saíram do consumidor. */
+    public long processadas() {
+        return mensagens.sum() + erros.sum();
+    }
+
+    public void recebidos(int bytes) {
+        bytesRecebidos.add(bytes);
+    }
+
+    /** Expõe um contador mantido em outro lugar (por exemplo, os acertos do cache). */
+    public synchronized void registrarContador(String nome, String ajuda, LongSupplier valor) {
+        contadores.add(new Contador(nome, ajuda, valor));
+    }
+
+    /**
+     * Sobe um servidor HTTP local com {@code GET /metrics}, com as métricas de todos os consumidores
+     * da mesma JVM no mesmo endpoint, diferenciadas pelo rótulo {@code consumidor}. Porta 0 ou
+     * negativa desliga.
+     */
+    public static void iniciarServidor(int porta, List<Metricas> todas) throws IOException {
+        if (porta <= 0) return;
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(porta), 0);
+        servidor.createContext("/metrics", troca -> {
+            byte[] corpo = texto(todas).getBytes(StandardCharsets.UTF_8);
+            troca.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            troca.sendResponseHeaders(200, corpo.length);
+            try (OutputStream out = troca.getResponseBody()) {
+                out.write(corpo);
+            }
+        });
+        servidor.start();
+        System.out.println(" [*] Métricas em http://0.0.0.0:" + porta + "/metrics");
+    }
+
+    /**
+     * Métricas de vários consumidores no formato texto do Prometheus; {@code HELP} e {@code TYPE}
+     * aparecem uma única vez por métrica, como o formato exige.
+     */
+    public static String texto(List<Metricas> todas) {
+        StringBuilder sb = new StringBuilder(4096 * todas.size());
+        sb.append("# HELP carga_ia_etapa_segundos Latência de cada etapa do pipeline\n");
+        sb.append("# TYPE carga_ia_etapa_segundos summary\n");
+        for (Metricas metricas : todas) {
+            metricas.etapas(sb);
+        }
+        // Contadores agrupados por nome, na ordem em que foram registrados
+        Map<String, String> ajudas = new LinkedHashMap<>();
+        for (Metricas metricas : todas) {
+            for (Contador contador : metricas.contadores()) {
+                ajudas.putIfAbsent(contador.nome, contador.ajuda);
+            }
+        }
+        for (Map.Entry<String, String> familia : ajudas.entrySet()) {
+            String nome = familia.getKey();
+            sb.append("# HELP ").append(nome).append(' ').append(familia.getValue()).append('\n');
+            sb.append("# TYPE ").append(nome).append(" counter\n");
+            for (Metricas metricas : todas) {
+                for (Contador contador : metricas.contadores()) {
+                    if (!contador.nome.equals(nome)) continue;
+                    sb.append(nome).append("{consumidor=\"").append(metricas.consumidor).append("\"} ")
+                            .append(contador.valor.getAsLong()).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private synchronized List<Contador> contadores() {
+        return new ArrayList<>(contadores);
+    }
+
+    private void etapas(StringBuilder sb) {
+        String rotulo = "consumidor=\"" + consumidor + "\"";
+        for (Etapa etapa : Etapa.values()) {
+            ConcurrentHistogram histograma = histogramas[etapa.ordinal()];
+            String rotulos = rotulo + ",etapa=\"" + etapa.nome + "\"";
+            for (double quantil : QUANTIS) {
+                // Sem observações o Prometheus espera NaN nos quantis
+                String valor = histograma.getTotalCount() == 0 ? "NaN" : segundos(histograma.getValueAtPercentile(quantil * 100));
+                sb.append("carga_ia_etapa_segundos{").append(rotulos).append(",quantile=\"").append(quantil).append("\"} ")
+                        .append(valor).append('\n');
+            }
+            sb.append("carga_ia_etapa_segundos_sum{").append(rotulos).append("} ")
+                    .append(segundos(somas[etapa.ordinal()].sum())).append('\n');
+            sb.append("carga_ia_etapa_segundos_count{").append(rotulos).append("} ")
+                    .append(histograma.getTotalCount()).append('\n');
+        }
+    }
+
+    private static String segundos(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1e6);
+    }
+}
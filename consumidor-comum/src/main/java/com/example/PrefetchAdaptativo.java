@@ -0,0 +1,105 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Ajusta o {@code basicQos} dos canais de um classificador pela vazão observada.
+ *
+ * Mensagens entregues e ainda não confirmadas esperam no consumidor; pela lei de Little, com
+ * {@code prefetch} mensagens por canal e vazão {@code λ} por canal, cada uma fica em média
+ * {@code prefetch / λ} no consumidor. A cada intervalo o prefetch passa a {@code λ × latência alvo},
+ * limitado a [mínimo, máximo] e a no máximo o dobro do valor anterior. Um classificador lento
+ * fica com poucas mensagens retidas (o resto continua no broker, onde prioridades valem) e um
+ * rápido recebe o suficiente para não ficar ocioso.
+ *
+ * Com {@code global=false} um {@code basicQos} não alcança o consumo já em curso no canal, então
+ * cada troca refaz a assinatura dos canais ({@link CanalConsumidor#trocarPrefetch(int)}).
+ */
+final class PrefetchAdaptativo {
+
+    private final String nome;
+    private final LongSupplier processadas;
+    private final long latenciaAlvoMs;
+    private final int minimo;
+    private final int maximo;
+    private final List<CanalConsumidor> canais = new CopyOnWriteArrayList<>();
+    private final RegistroAssincrono log;
+
+    private volatile int atual;
+    private long processadasAntes;
+    private long instanteAntesNs;
+
+    /**
+     * @param processadas  total de mensagens concluídas (com ou sem erro) até agora
+     */
+    PrefetchAdaptativo(String nome, LongSupplier processadas, int inicial, long latenciaAlvoMs, int minimo, int maximo,
+                       RegistroAssincrono log) {
+        this.nome = nome;
+        this.log = log;
+        this.processadas = processadas;
+        this.latenciaAlvoMs = Math.max(1, latenciaAlvoMs);
+        this.minimo = Math.max(1, minimo);
+        this.maximo = Math.max(this.minimo, maximo);
+        this.atual = Math.max(this.minimo, Math.min(this.maximo, inicial));
+    }
+
+    int atual() {
+        return atual;
+    }
+
+    /** Passa a ajustar um canal que já consome com o prefetch {@link #atual()}. */
+    void adicionar(CanalConsumidor canal) {
+        canais.add(canal);
+    }
+
+    /** Para de ajustar um canal que está sendo drenado. */
+    void remover(CanalConsumidor canal) {
+        canais.remove(canal);
+    }
+
+    void agendar(ScheduledExecutorService agendador, int intervaloS) {
+        processadasAntes = processadas.getAsLong();
+        instanteAntesNs = System.nanoTime();
+        long intervalo = Math.max(1, intervaloS);
+        agendador.scheduleAtFixedRate(this::ajustar, intervalo, intervalo, TimeUnit.SECONDS);
+    }
+
+    private void ajustar() {
+        // Uma exceção que escapasse cancelaria o agendamento sem aviso
+        try {
+            long agoraNs = System.nanoTime();
+            long total = processadas.getAsLong();
+            long concluidas = total - processadasAntes;
+            double segundos = (agoraNs - instanteAntesNs) / 1e9;
+            processadasAntes = total;
+            instanteAntesNs = agoraNs;
+            // Sem mensagens no intervalo não há o que medir: a fila está vazia ou o consumidor parado
+            if (concluidas == 0 || canais.isEmpty() || segundos <= 0) return;
+
+            double vazaoPorCanal = concluidas / segundos / canais.size();
+            long alvo = Math.round(vazaoPorCanal * latenciaAlvoMs / 1000.0);
+            int novo = (int) Math.max(minimo, Math.min(Math.min(maximo, 2L * atual), alvo));
+            if (novo != atual) {
+                System.out.printf(" [prefetch %s] %d -> %d (%.1f msg/s por canal, alvo %d ms)%n",
+                        nome, atual, novo, vazaoPorCanal, latenciaAlvoMs);
+                atual = novo;
+            }
+            // Também alcança canais abertos com o valor anterior enquanto a troca acontecia
+            for (CanalConsumidor canal : canais) {
+                if (canal.prefetch() == novo) continue;
+                try {
+                    canal.trocarPrefetch(novo);
+                } catch (IOException | RuntimeException e) {
+                    log.aviso("não foi possível ajustar o prefetch de " + nome + ": " + e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.erro("falha no ajuste do prefetch de " + nome, e);
+        }
+    }
+}
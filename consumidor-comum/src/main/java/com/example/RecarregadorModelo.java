@@ -0,0 +1,204 @@
+package com.example;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Recarga do modelo a quente: observa o diretório de treino com um {@link WatchService} e, quando
+ * imagens são adicionadas, alteradas ou removidas, extrai features só desses arquivos e entrega o
+ * novo conjunto de treino ao consumidor, que monta outro KNN e troca a referência atomicamente.
+ *
+ * Tudo roda em uma thread própria; a fila continua sendo consumida com o modelo anterior até a troca.
+ * Eventos próximos são agrupados e, como alguns volumes montados não geram eventos, o diretório
+ * também é comparado periodicamente com o último estado conhecido.
+ */
+public final class RecarregadorModelo {
+
+    /** Recebe o conjunto de treino completo (ordenado por nome de arquivo) depois de cada mudança. */
+    public interface AoAtualizar {
+        void modeloAtualizado(double[][] features, int[] rotulos, String[] nomes, File[] arquivos);
+    }
+
+    private static final long AGRUPAMENTO_MS = 500;
+
+    private static final class Estado {
+        final long tamanho;
+        final long modificadoEm;
+
+        Estado(File arquivo) {
+            this.tamanho = arquivo.length();
+            this.modificadoEm = arquivo.lastModified();
+        }
+
+        boolean igual(Estado outro) {
+            return outro != null && tamanho == outro.tamanho && modificadoEm == outro.modificadoEm;
+        }
+    }
+
+    private final File diretorio;
+    private final int paralelismo;
+    private final long varreduraMs;
+    private final Function<String, Integer> rotuloPorNome;
+    private final Function<BufferedImage, double[]> extrator;
+    private final AoAtualizar aoAtualizar;
+    private final RegistroAssincrono log;
+
+    /** Amostras atuais por nome de arquivo, em ordem alfabética. */
+    private final TreeMap<String, TreinoParalelo.Amostra> amostras = new TreeMap<>();
+    /** Tamanho/data de cada imagem do diretório na última vez que foi vista. */
+    private final Map<String, Estado> conhecidos = new HashMap<>();
+
+    public RecarregadorModelo(File diretorio, int paralelismo, long varreduraMs,
+                              Function<String, Integer> rotuloPorNome,
+                              Function<BufferedImage, double[]> extrator,
+                              AoAtualizar aoAtualizar, RegistroAssincrono log) {
+        this.diretorio = diretorio;
+        this.log = log;
+        this.paralelismo = paralelismo;
+        this.varreduraMs = varreduraMs;
+        this.rotuloPorNome = rotuloPorNome;
+        this.extrator = extrator;
+        this.aoAtualizar = aoAtualizar;
+    }
+
+    /**
+     * Informa uma amostra que já está no modelo em uso (vinda do treino inicial ou do snapshot).
+     */
+    public void registrarAmostra(String nome, int rotulo, double[] features) {
+        amostras.put(nome, new TreinoParalelo.Amostra(new File(diretorio, nome), rotulo, features, null));
+    }
+
+    /**
+     * Registra o estado atual do diretório como referência e começa a observá-lo em segundo plano.
+     */
+    public void iniciar() throws IOException {
+        for (File arquivo : listarImagens()) {
+            conhecidos.put(arquivo.getName(), new Estado(arquivo));
+        }
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        diretorio.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        Thread thread = new Thread(() -> observar(watcher), "recarga-modelo");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println(" [*] Observando " + diretorio + " para recarregar o modelo sem reiniciar");
+    }
+
+    private void observar(WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey chave = watcher.poll(varreduraMs, TimeUnit.MILLISECONDS);
+                Set<String> alterados = new LinkedHashSet<>();
+                boolean varrerTudo = chave == null;
+
+                // Junta os eventos de uma cópia em andamento antes de processar
+                while (chave != null) {
+                    for (WatchEvent<?> evento : chave.pollEvents()) {
+                        if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            varrerTudo = true;
+                        } else {
+                            alterados.add(((Path) evento.context()).getFileName().toString());
+                        }
+                    }
+                    if (!chave.reset()) {
+                        log.aviso("o diretório de treino " + diretorio + " deixou de ser observável.");
+                        return;
+                    }
+                    chave = watcher.poll(AGRUPAMENTO_MS, TimeUnit.MILLISECONDS);
+                }
+
+                if (varrerTudo) {
+                    alterados.addAll(conhecidos.keySet());
+                    for (File arquivo : listarImagens()) alterados.add(arquivo.getName());
+                }
+                try {
+                    atualizar(alterados);
+                } catch (RuntimeException e) {
+                    log.erro("erro ao recarregar o modelo", e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void atualizar(Set<String> nomes) {
+        List<File> paraExtrair = new ArrayList<>();
+        boolean mudou = false;
+        for (String nome : nomes) {
+            File arquivo = new File(diretorio, nome);
+            if (!arquivo.isFile() || !ehImagem(nome)) {
+                mudou |= conhecidos.remove(nome) != null | amostras.remove(nome) != null;
+                continue;
+            }
+            Estado atual = new Estado(arquivo);
+            if (atual.igual(conhecidos.get(nome))) continue;
+            conhecidos.put(nome, atual);
+            mudou |= amostras.remove(nome) != null;
+            paraExtrair.add(arquivo);
+        }
+
+        if (!paraExtrair.isEmpty()) {
+            System.out.println(" [*] Mudanças no diretório de treino: extraindo features de " + paraExtrair.size() + " arquivo(s)");
+            for (TreinoParalelo.Amostra amostra : TreinoParalelo.extrair(paraExtrair.toArray(new File[0]),
+                    paralelismo, rotuloPorNome, extrator)) {
+                if (amostra.valida()) {
+                    amostras.put(amostra.arquivo.getName(), amostra);
+                    mudou = true;
+                }
+            }
+        }
+        if (!mudou) return;
+
+        long distintos = amostras.values().stream().mapToInt(a -> a.rotulo).distinct().count();
+        if (amostras.size() < 2 || distintos < 2) {
+            log.aviso("o diretório de treino ficou com amostras insuficientes; mantendo o modelo atual.");
+            return;
+        }
+
+        double[][] features = new double[amostras.size()][];
+        int[] rotulos = new int[amostras.size()];
+        String[] nomesAmostras = new String[amostras.size()];
+        int i = 0;
+        for (TreinoParalelo.Amostra amostra : amostras.values()) {
+            features[i] = amostra.features;
+            rotulos[i] = amostra.rotulo;
+            nomesAmostras[i] = amostra.arquivo.getName();
+            i++;
+        }
+        aoAtualizar.modeloAtualizado(features, rotulos, nomesAmostras, listarImagens());
+    }
+
+    /** Imagens do diretório em ordem alfabética, como no treino inicial. */
+    private File[] listarImagens() {
+        File[] arquivos = diretorio.listFiles((dir, nome) -> ehImagem(nome));
+        if (arquivos == null) return new File[0];
+        Arrays.sort(arquivos, Comparator.comparing(File::getName));
+        return arquivos;
+    }
+
+    private static boolean ehImagem(String nome) {
+        String minusculo = nome.toLowerCase();
+        return minusculo.endsWith(".png") || minusculo.endsWith(".jpg") || minusculo.endsWith(".jpeg");
+    }
+}
@@ -0,0 +1,271 @@
+package com.example;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log assíncrono das mensagens processadas e dos avisos e erros do consumidor, fora da thread de entrega.
+ *
+ * Os registros ficam em um anel de slots pré-alocados: quem registra só reserva um slot com CAS,
+ * copia referências e números para ele e publica a sequência, sem alocar nem bloquear. Uma thread
+ * própria formata os registros prontos em linhas {@code chave=valor} e escreve cada rodada com uma
+ * única chamada a {@code System.out}. Com o anel cheio o registro é descartado e contado.
+ *
+ * O nível ({@code info}, {@code aviso}, {@code erro} ou {@code desligado}) e a amostragem (um em
+ * cada n resultados) reduzem o volume em cargas altas. A pilha das exceções registradas com
+ * {@link #erro} também é formatada na thread do log. No desligamento, {@link #fechar()} espera o
+ * anel esvaziar para que os últimos registros não se percam com a saída do processo.
+ */
+public final class RegistroAssincrono {
+
+    public static final int INFO = 0;
+    public static final int AVISO = 1;
+    public static final int ERRO = 2;
+    public static final int DESLIGADO = 3;
+
+    private static final String[] NOMES_NIVEL = {"INFO", "AVISO", "ERRO"};
+
+    // Quanto fechar() espera pelos registros pendentes
+    private static final long ESPERA_FECHAR_MS = 5000;
+
+    /** Slot reutilizável do anel; {@code sequencia} é publicada por último. */
+    private static final class Registro {
+        volatile long sequencia = -1;
+        boolean ehResultado;
+        int nivel;
+        long instanteMs;
+        String texto;
+        Throwable causa;
+        String routingKey;
+        Object idMensagem;
+        String arquivo;
+        String resultado;
+        boolean doCache;
+        long filaUs;
+        long decodificacaoUs;
+        long extracaoUs;
+        long predicaoUs;
+        long anotacaoUs;
+    }
+
+    private final Registro[] anel;
+    private final int mascara;
+    private final int nivelMinimo;
+    private final int amostragem;
+
+    private final AtomicLong proximo = new AtomicLong();
+    private final AtomicLong lido = new AtomicLong();
+    private final AtomicLong amostra = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    // Registros anteriores a esta sequência já foram formatados e escritos em System.out
+    private final AtomicLong escritos = new AtomicLong();
+
+    /**
+     * @param capacidade   registros no anel (arredondado para potência de 2)
+     * @param nivel        nível mínimo registrado: info, aviso, erro ou desligado
+     * @param amostragem   registra um a cada n resultados (1 registra todos)
+     */
+    public RegistroAssincrono(String nomeThread, int capacidade, String nivel, int amostragem) {
+        int tamanho = Integer.highestOneBit(Math.max(2, capacidade - 1)) << 1;
+        this.anel = new Registro[tamanho];
+        for (int i = 0; i < tamanho; i++) {
+            anel[i] = new Registro();
+        }
+        this.mascara = tamanho - 1;
+        this.nivelMinimo = nivel(nivel);
+        this.amostragem = Math.max(1, amostragem);
+
+        Thread thread = new Thread(this::escrever, nomeThread);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static int nivel(String nome) {
+        switch (nome == null ? "" : nome.trim().toLowerCase()) {
+            case "aviso":
+                return AVISO;
+            case "erro":
+                return ERRO;
+            case "desligado":
+                return DESLIGADO;
+            default:
+                return INFO;
+        }
+    }
+
+    /**
+     * Decide se o próximo resultado entra no log, de acordo com o nível e a amostragem. Deve ser
+     * consultado antes de montar os argumentos de {@link #resultado}.
+     */
+    public boolean amostrar() {
+        if (nivelMinimo > INFO) return false;
+        return amostragem == 1 || amostra.getAndIncrement() % amostragem == 0;
+    }
+
+    /** Registra o resultado de uma mensagem com os tempos de cada etapa (µs; 0 quando a etapa não ocorreu). */
+    public void resultado(String routingKey, Object idMensagem, String arquivo, String resultado, boolean doCache,
+                          long filaUs, long decodificacaoUs, long extracaoUs, long predicaoUs, long anotacaoUs) {
+        long sequencia = reservar();
+        if (sequencia < 0) return;
+        Registro r = anel[(int) sequencia & mascara];
+        r.ehResultado = true;
+        r.nivel = INFO;
+        r.instanteMs = System.currentTimeMillis();
+        r.texto = null;
+        r.routingKey = routingKey;
+        r.idMensagem = idMensagem;
+        r.arquivo = arquivo;
+        r.resultado = resultado;
+        r.doCache = doCache;
+        r.filaUs = filaUs;
+        r.decodificacaoUs = decodificacaoUs;
+        r.extracaoUs = extracaoUs;
+        r.predicaoUs = predicaoUs;
+        r.anotacaoUs = anotacaoUs;
+        r.sequencia = sequencia;
+    }
+
+    /**
+     * Registra uma linha de texto livre no nível indicado.
+     *
+     * @param nivel  {@link #INFO}, {@link #AVISO} ou {@link #ERRO}
+     */
+    public void texto(int nivel, String texto) {
+        if (nivel < INFO || nivel > ERRO) throw new IllegalArgumentException("Nível de log inválido: " + nivel);
+        texto(nivel, texto, null);
+    }
+
+    public void aviso(String texto) {
+        texto(AVISO, texto, null);
+    }
+
+    /** Registra um erro; a pilha de {@code causa} (se houver) vai junto, formatada na thread do log. */
+    public void erro(String texto, Throwable causa) {
+        texto(ERRO, texto, causa);
+    }
+
+    private void texto(int nivel, String texto, Throwable causa) {
+        if (nivel < nivelMinimo) return;
+        long sequencia = reservar();
+        if (sequencia < 0) return;
+        Registro r = anel[(int) sequencia & mascara];
+        r.ehResultado = false;
+        r.nivel = nivel;
+        r.instanteMs = System.currentTimeMillis();
+        r.texto = texto;
+        r.causa = causa;
+        r.sequencia = sequencia;
+    }
+
+    public long descartados() {
+        return descartados.get();
+    }
+
+    /**
+     * Espera (por até alguns segundos) que tudo o que já foi registrado seja escrito e descarregado.
+     * Registros feitos depois continuam sendo escritos enquanto o processo existir.
+     *
+     * @return false se o prazo acabou com registros ainda no anel
+     */
+    public boolean fechar() {
+        long alvo = proximo.get();
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_FECHAR_MS);
+        while (escritos.get() < alvo) {
+            if (System.nanoTime() - limite >= 0) return false;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    /** Reserva a próxima sequência livre, ou devolve -1 (e conta o descarte) se o anel estiver cheio. */
+    private long reservar() {
+        while (true) {
+            long sequencia = proximo.get();
+            if (sequencia - lido.get() >= anel.length) {
+                descartados.incrementAndGet();
+                return -1;
+            }
+            if (proximo.compareAndSet(sequencia, sequencia + 1)) return sequencia;
+        }
+    }
+
+    private void escrever() {
+        StringBuilder lote = new StringBuilder(64 * 1024);
+        long avisados = 0;
+        while (true) {
+            long sequencia = lido.get();
+            Registro r = anel[(int) sequencia & mascara];
+            if (r.sequencia != sequencia) {
+                // Nada pronto: escreve o que acumulou e espera um pouco
+                long perdidos = descartados.get();
+                if (perdidos != avisados) {
+                    formatarTexto(lote, AVISO, System.currentTimeMillis(),
+                            (perdidos - avisados) + " registro(s) de log descartado(s) com o anel cheio");
+                    avisados = perdidos;
+                }
+                if (lote.length() > 0) {
+                    System.out.print(lote);
+                    System.out.flush();
+                    lote.setLength(0);
+                }
+                escritos.set(sequencia);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            int inicio = lote.length();
+            try {
+                if (r.ehResultado) {
+                    formatarResultado(lote, r);
+                } else {
+                    formatarTexto(lote, r.nivel, r.instanteMs, r.texto);
+                    if (r.causa != null) formatarPilha(lote, r.causa);
+                }
+            } catch (RuntimeException e) {
+                // Um toString() ou uma pilha que falha não pode derrubar a thread do log
+                lote.setLength(inicio);
+                formatarTexto(lote, ERRO, r.instanteMs, "registro de log não formatado: " + e);
+            }
+            // Solta as referências para não segurar strings até o slot ser reutilizado
+            r.texto = null;
+            r.causa = null;
+            r.routingKey = null;
+            r.idMensagem = null;
+            r.arquivo = null;
+            lido.lazySet(sequencia + 1);
+            if (lote.length() > 60 * 1024) {
+                System.out.print(lote);
+                lote.setLength(0);
+            }
+        }
+    }
+
+    private static void formatarTexto(StringBuilder sb, int nivel, long instanteMs, String texto) {
+        sb.append(Instant.ofEpochMilli(instanteMs)).append(' ').append(NOMES_NIVEL[nivel]).append(' ')
+                .append(texto).append('\n');
+    }
+
+    private static void formatarPilha(StringBuilder sb, Throwable causa) {
+        StringWriter pilha = new StringWriter();
+        causa.printStackTrace(new PrintWriter(pilha));
+        sb.append(pilha);
+    }
+
+    private static void formatarResultado(StringBuilder sb, Registro r) {
+        sb.append(Instant.ofEpochMilli(r.instanteMs)).append(" INFO")
+                .append(" rk=").append(r.routingKey)
+                .append(" id=").append(r.idMensagem == null ? "-" : r.idMensagem)
+                .append(" arquivo=").append(r.arquivo)
+                .append(" resultado=").append(r.resultado)
+                .append(" cache=").append(r.doCache)
+                .append(" fila_us=").append(r.filaUs)
+                .append(" decod_us=").append(r.decodificacaoUs)
+                .append(" extr_us=").append(r.extracaoUs)
+                .append(" pred_us=").append(r.predicaoUs)
+                .append(" anot_us=").append(r.anotacaoUs)
+                .append('\n');
+    }
+}
@@ -0,0 +1,189 @@
+package com.example;
+
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static com.example.Config.lerConfig;
+import static com.example.Config.lerFlag;
+import static com.example.Config.lerTexto;
+
+/**
+ * Processo consumidor: descobre os {@link Classificador}es do classpath com {@link ServiceLoader}
+ * e hospeda todos na mesma JVM.
+ *
+ * Os classificadores dividem uma conexão com o RabbitMQ, o pool que entrega as mensagens, o
+ * agendador dos lotes, o gravador, o log e o endpoint de métricas; modelo e cache continuam
+ * separados. {@code CLASSIFICADORES} (nomes separados por vírgula) restringe quais são iniciados.
+ *
+ * Com {@code THREADS_VIRTUAIS=true} as entregas de todos os classificadores rodam em threads
+ * virtuais. Nesse modo, ou com mais de um classificador, a parte de CPU de todos fica limitada a
+ * {@code LIMITE_CPU} permissões, repartidas por tempo de uso ponderado pelo {@code PESO} de cada um.
+ */
+public final class ServidorConsumidores {
+
+    private ServidorConsumidores() {
+    }
+
+    public static void main(String[] args) throws IOException, TimeoutException {
+        executar(lerTexto("CLASSIFICADORES", ""));
+    }
+
+    /**
+     * @param nomes  classificadores a iniciar, separados por vírgula; vazio inicia todos os encontrados
+     */
+    public static void executar(String nomes) throws IOException, TimeoutException {
+        ImageIO.setUseCache(false);
+        List<Classificador> classificadores = descobrir(nomes);
+        if (classificadores.isEmpty()) {
+            throw new IllegalStateException("Nenhum classificador encontrado para '" + nomes
+                    + "' (META-INF/services/" + Classificador.class.getName() + ")");
+        }
+        System.out.println(" [*] Classificadores: " + classificadores.stream()
+                .map(Classificador::nome).collect(Collectors.joining(", ")));
+
+        // Pool de entrega das mensagens, dividido entre os canais de todos os classificadores
+        int numConsumidores = lerConfig("NUM_CONSUMIDORES", Runtime.getRuntime().availableProcessors());
+
+        // Threads virtuais por entrega, com decodificação, extração e predição limitadas a LIMITE_CPU ao mesmo tempo
+        boolean threadsVirtuais = lerFlag("THREADS_VIRTUAIS", false);
+        ExecutorService execucao = threadsVirtuais
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("entrega-", 0).factory())
+                : null;
+        // Vários classificadores disputam os mesmos núcleos: o escalonador reparte a CPU entre eles
+        EscalonadorJusto cpu = threadsVirtuais || classificadores.size() > 1
+                ? new EscalonadorJusto(lerConfig("LIMITE_CPU", Runtime.getRuntime().availableProcessors()))
+                : null;
+
+        // Log assíncrono: nível mínimo (info, aviso, erro, desligado), um a cada AMOSTRAGEM_LOG resultados e tamanho do anel
+        RegistroAssincrono log = new RegistroAssincrono("log-consumidor",
+                lerConfig("FILA_LOG", 8192), lerTexto("NIVEL_LOG", "info"), lerConfig("AMOSTRAGEM_LOG", 1));
+
+        // Estágio de gravação: threads de codificação, tamanho da fila (backpressure) e lote de fsync (0 = sem fsync)
+        GravadorImagens gravador = new GravadorImagens(
+                lerConfig("GRAVADORES", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                lerConfig("FILA_GRAVACAO", 64),
+                lerConfig("FSYNC_LOTE", 0),
+                log);
+
+        List<ConsumidorImagens> consumidores = new ArrayList<>();
+        List<Metricas> metricas = new ArrayList<>();
+        for (Classificador classificador : classificadores) {
+            ConsumidorImagens consumidor = new ConsumidorImagens(classificador, gravador, log, execucao, cpu);
+            consumidor.preparar();
+            consumidores.add(consumidor);
+            metricas.add(consumidor.metricas());
+        }
+
+        // Relatórios do cache, prazos dos lotes incompletos e ajustes do prefetch
+        ScheduledExecutorService agendador = Executors.newScheduledThreadPool(Math.max(1, numConsumidores), r -> {
+            Thread t = new Thread(r, "agendador-consumidor");
+            t.setDaemon(true);
+            return t;
+        });
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.agendarRelatorioCache(agendador);
+        }
+
+        // Latência por etapa e vazão de todos os classificadores, expostas em /metrics nesta porta (0 desliga o servidor)
+        Metricas.iniciarServidor(lerConfig("PORTA_METRICAS", 9400), metricas);
+
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost("rabbitmq");
+        factory.setUsername("user");
+        factory.setPassword("password");
+
+        // Com escala automática o pool comporta todos os canais que podem chegar a ser abertos
+        int tamanhoPool = numConsumidores;
+        for (ConsumidorImagens consumidor : consumidores) {
+            if (consumidor.escalaAutomatica()) tamanhoPool = Math.max(tamanhoPool, consumidor.maximoDeCanais());
+        }
+        ExecutorService poolConsumidores = Executors.newFixedThreadPool(tamanhoPool);
+        Connection connection = factory.newConnection(poolConsumidores);
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.iniciar(connection, agendador);
+        }
+
+        // SIGTERM (docker stop): para de receber, termina e confirma o que já foi entregue e só então fecha a conexão
+        long drenagemMs = lerConfig("DRENAGEM_S", 30) * 1000L;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> drenar(consumidores, gravador, connection, log, drenagemMs), "drenagem"));
+    }
+
+    private static void drenar(List<ConsumidorImagens> consumidores, GravadorImagens gravador, Connection connection,
+                               RegistroAssincrono log, long prazoMs) {
+        System.out.println(" [*] Encerrando: drenando as mensagens em andamento (até " + prazoMs / 1000 + " s)");
+        long limite = System.nanoTime() + prazoMs * 1_000_000L;
+        for (ConsumidorImagens consumidor : consumidores) {
+            consumidor.pararDeConsumir();
+        }
+        boolean todas = true;
+        try {
+            for (ConsumidorImagens consumidor : consumidores) {
+                todas &= consumidor.aguardarConcluidas(limite);
+            }
+        } catch (InterruptedException e) {
+            todas = false;
+            Thread.currentThread().interrupt();
+        }
+        // Sem ack pendente, o que resta na fila de gravação são imagens de mensagens cujo prazo esgotou;
+        // elas terminam de ser gravadas antes dos arquivos mapeados e do log serem fechados
+        try {
+            gravador.encerrar();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ConsumidorImagens consumidor : consumidores) {
+            try {
+                consumidor.fechar();
+            } catch (RuntimeException e) {
+                System.err.println("AVISO: falha ao descarregar o cache ou o log de resultados: " + e.getMessage());
+            }
+        }
+        log.fechar();
+        try {
+            if (connection.isOpen()) connection.close();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("AVISO: falha ao fechar a conexão: " + e.getMessage());
+        }
+        System.out.println(todas
+                ? " [*] Todas as mensagens entregues foram gravadas e confirmadas"
+                : " [*] Prazo de drenagem esgotado; as mensagens sem ack voltam para a fila");
+    }
+
+    /** Classificadores do classpath, filtrados pelos nomes pedidos e na ordem em que foram pedidos. */
+    static List<Classificador> descobrir(String nomes) {
+        List<Classificador> encontrados = new ArrayList<>();
+        for (Classificador classificador : ServiceLoader.load(Classificador.class)) {
+            encontrados.add(classificador);
+        }
+        if (nomes == null || nomes.isBlank()) return encontrados;
+
+        List<Classificador> escolhidos = new ArrayList<>();
+        for (String nome : Arrays.asList(nomes.split(","))) {
+            String procurado = nome.trim();
+            if (procurado.isEmpty()) continue;
+            Classificador classificador = encontrados.stream()
+                    .filter(c -> c.nome().equalsIgnoreCase(procurado))
+                    .findFirst()
+                    .orElse(null);
+            if (classificador == null) {
+                System.err.println("AVISO: classificador '" + procurado + "' não encontrado. Disponíveis: "
+                        + encontrados.stream().map(Classificador::nome).collect(Collectors.joining(", ")));
+                continue;
+            }
+            escolhidos.add(classificador);
+        }
+        return escolhidos;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example;
+
+import net.jpountz.xxhash.StreamingXXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Snapshot binário de um modelo KNN treinado: matriz de features achatada, rótulos, k, o nome
+ * do arquivo de cada amostra e a impressão digital do treino que gerou o modelo (diretório e extrator).
+ *
+ * Na inicialização o arquivo é mapeado em memória e o KNN é reconstruído sem decodificar
+ * nenhuma imagem; o treino completo só acontece quando o diretório de treino ou o extrator de
+ * features (classificador, dimensão, versão e parâmetros) mudam.
+ *
+ * Formato (little-endian): mágico, versão, impressão, k, n, dimensão, n rótulos, padding até
+ * múltiplo de 8, n*dimensão doubles e, por fim, os n nomes (tamanho em short + UTF-8).
+ */
+public final class SnapshotModelo {
+
+    private static final int MAGICO = 0x4D4F444C; // "MODL"
+    // 3: a impressão passou a incluir o extrator de features
+    private static final int VERSAO_FORMATO = 3;
+    private static final int CABECALHO = 28;
+
+    public final long impressaoDiretorio;
+    public final int k;
+    public final int dimensao;
+    public final int[] rotulos;
+    /** Features das n amostras, uma após a outra (n * dimensao valores). */
+    public final double[] features;
+    /** Arquivo de treino de onde veio cada amostra. */
+    public final String[] nomes;
+
+    public SnapshotModelo(long impressaoDiretorio, int k, double[][] matriz, int[] rotulos, String[] nomes) {
+        this.impressaoDiretorio = impressaoDiretorio;
+        this.k = k;
+        this.dimensao = matriz.length > 0 ? matriz[0].length : 0;
+        this.rotulos = rotulos.clone();
+        this.nomes = nomes.clone();
+        this.features = new double[matriz.length * dimensao];
+        for (int i = 0; i < matriz.length; i++) {
+            System.arraycopy(matriz[i], 0, features, i * dimensao, dimensao);
+        }
+    }
+
+    private SnapshotModelo(long impressaoDiretorio, int k, int dimensao, int[] rotulos, double[] features, String[] nomes) {
+        this.impressaoDiretorio = impressaoDiretorio;
+        this.k = k;
+        this.dimensao = dimensao;
+        this.rotulos = rotulos;
+        this.features = features;
+        this.nomes = nomes;
+    }
+
+    public int amostras() {
+        return rotulos.length;
+    }
+
+    /** Matriz no formato esperado por {@code KNN.fit}. */
+    public double[][] matriz() {
+        double[][] matriz = new double[rotulos.length][];
+        for (int i = 0; i < matriz.length; i++) {
+            matriz[i] = new double[dimensao];
+            System.arraycopy(features, i * dimensao, matriz[i], 0, dimensao);
+        }
+        return matriz;
+    }
+
+    /**
+     * Impressão digital do conjunto de treino: xxHash64 da descrição do extrator de features e dos
+     * nomes e do conteúdo de cada arquivo, na ordem recebida (que deve ser determinística, por
+     * exemplo ordenada por nome).
+     *
+     * @param extrator  tudo o que muda as features de uma mesma imagem (classificador, dimensão, parâmetros)
+     */
+    public static long impressaoDiretorio(File[] arquivos, String extrator) throws IOException {
+        StreamingXXHash64 hash = XXHashFactory.fastestInstance().newStreamingHash64(0);
+        byte[] descricao = extrator.getBytes(StandardCharsets.UTF_8);
+        hash.update(descricao, 0, descricao.length);
+        byte[] buffer = new byte[64 * 1024];
+        for (File arquivo : arquivos) {
+            byte[] nome = arquivo.getName().getBytes(StandardCharsets.UTF_8);
+            hash.update(nome, 0, nome.length);
+            try (InputStream in = new FileInputStream(arquivo)) {
+                int lidos;
+                while ((lidos = in.read(buffer)) > 0) {
+                    hash.update(buffer, 0, lidos);
+                }
+            }
+        }
+        return hash.getValue();
+    }
+
+    /**
+     * Lê um snapshot mapeando o arquivo em memória. Retorna null se o arquivo não existir
+     * ou não for um snapshot válido.
+     */
+    public static SnapshotModelo ler(Path caminho) {
+        if (!Files.isRegularFile(caminho)) return null;
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.READ)) {
+            if (canal.size() < CABECALHO) return null;
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapa.getInt() != MAGICO || mapa.getInt() != VERSAO_FORMATO) return null;
+            long impressao = mapa.getLong();
+            int k = mapa.getInt();
+            int n = mapa.getInt();
+            int dimensao = mapa.getInt();
+            if (n < 0 || dimensao < 0 || canal.size() < tamanhoArquivo(n, dimensao)) return null;
+
+            int[] rotulos = new int[n];
+            mapa.asIntBuffer().get(rotulos);
+            mapa.position(inicioFeatures(n));
+            double[] features = new double[n * dimensao];
+            mapa.asDoubleBuffer().get(features);
+            mapa.position((int) tamanhoArquivo(n, dimensao));
+            String[] nomes = new String[n];
+            for (int i = 0; i < n; i++) {
+                byte[] nome = new byte[mapa.getShort() & 0xFFFF];
+                mapa.get(nome);
+                nomes[i] = new String(nome, StandardCharsets.UTF_8);
+            }
+            return new SnapshotModelo(impressao, k, dimensao, rotulos, features, nomes);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("AVISO: snapshot do modelo ilegível em " + caminho + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Grava o snapshot em um arquivo temporário e o move sobre o destino, para que um
+     * consumidor reiniciado nunca encontre um snapshot pela metade.
+     */
+    public void gravar(Path caminho) throws IOException {
+        Path absoluto = caminho.toAbsolutePath();
+        Path temporario = Files.createTempFile(absoluto.getParent(), ".modelo", ".tmp");
+        int n = rotulos.length;
+        byte[][] nomesUtf8 = new byte[n][];
+        long tamanhoNomes = 0;
+        for (int i = 0; i < n; i++) {
+            nomesUtf8[i] = nomes[i].getBytes(StandardCharsets.UTF_8);
+            tamanhoNomes += 2 + nomesUtf8[i].length;
+        }
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, tamanhoArquivo(n, dimensao) + tamanhoNomes);
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+            mapa.putInt(MAGICO).putInt(VERSAO_FORMATO).putLong(impressaoDiretorio)
+                    .putInt(k).putInt(n).putInt(dimensao);
+            mapa.asIntBuffer().put(rotulos);
+            mapa.position(inicioFeatures(n));
+            mapa.asDoubleBuffer().put(features);
+            mapa.position((int) tamanhoArquivo(n, dimensao));
+            for (byte[] nome : nomesUtf8) {
+                mapa.putShort((short) nome.length).put(nome);
+            }
+            mapa.force();
+        }
+        Files.move(temporario, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int inicioFeatures(int n) {
+        int fimRotulos = CABECALHO + n * 4;
+        return (fimRotulos + 7) & ~7;
+    }
+
+    /** Tamanho do arquivo até o fim das features (os nomes vêm depois). */
+    private static long tamanhoArquivo(int n, int dimensao) {
+        return inicioFeatures(n) + (long) n * dimensao * 8;
+    }
+}
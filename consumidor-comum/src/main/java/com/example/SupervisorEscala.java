@@ -0,0 +1,145 @@
+package com.example;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Escala os canais de consumo de um classificador pela profundidade da fila.
+ *
+ * A cada intervalo lê quantas mensagens estão prontas na fila ({@code queueDeclarePassive}) e a
+ * vazão desde a última leitura. Se, nesse ritmo, a fila levaria mais que o tempo alvo para
+ * esvaziar, abre canais na proporção do atraso (no máximo dobrando de uma vez). Depois de alguns
+ * intervalos seguidos com a fila vazia, drena e fecha um canal por vez, sem devolver mensagens ao
+ * broker (veja {@link CanalConsumidor}). Réplicas concorrentes na mesma fila fazem o mesmo com a
+ * fila compartilhada, cada uma limitada aos seus próprios mínimo e máximo.
+ */
+final class SupervisorEscala {
+
+    /** Os canais de um classificador, do ponto de vista do supervisor. */
+    interface Alvo {
+        int canais();
+
+        void abrirCanal() throws IOException;
+
+        /** Drena e fecha um canal; bloqueia até as mensagens dele terminarem ou o prazo acabar. */
+        void fecharCanal() throws InterruptedException;
+    }
+
+    // Intervalos seguidos com a fila vazia antes de fechar um canal
+    private static final int OCIOSOS_PARA_REDUZIR = 3;
+
+    private final String nome;
+    private final Connection conexao;
+    private final String fila;
+    private final Alvo alvo;
+    private final LongSupplier processadas;
+    private final int minimo;
+    private final int maximo;
+    private final int tempoAlvoS;
+    private final RegistroAssincrono log;
+
+    private ScheduledFuture<?> agendamento;
+    private Channel controle;
+    private long processadasAntes;
+    private long instanteAntesNs;
+    private int ociosos;
+    private volatile boolean reduzindo;
+
+    /**
+     * @param tempoAlvoS  tempo máximo aceitável para esvaziar a fila na vazão atual
+     */
+    SupervisorEscala(String nome, Connection conexao, String fila, Alvo alvo, LongSupplier processadas,
+                     int minimo, int maximo, int tempoAlvoS, RegistroAssincrono log) {
+        this.nome = nome;
+        this.log = log;
+        this.conexao = conexao;
+        this.fila = fila;
+        this.alvo = alvo;
+        this.processadas = processadas;
+        this.minimo = Math.max(1, minimo);
+        this.maximo = Math.max(this.minimo, maximo);
+        this.tempoAlvoS = Math.max(1, tempoAlvoS);
+    }
+
+    void agendar(ScheduledExecutorService agendador, int intervaloS) {
+        processadasAntes = processadas.getAsLong();
+        instanteAntesNs = System.nanoTime();
+        long intervalo = Math.max(1, intervaloS);
+        agendamento = agendador.scheduleWithFixedDelay(this::avaliar, intervalo, intervalo, TimeUnit.SECONDS);
+    }
+
+    private synchronized void avaliar() {
+        long prontas;
+        try {
+            prontas = profundidade();
+        } catch (IOException | RuntimeException e) {
+            log.aviso("não foi possível ler a profundidade de '" + fila + "': " + e.getMessage());
+            return;
+        }
+        long agoraNs = System.nanoTime();
+        long total = processadas.getAsLong();
+        double vazao = (total - processadasAntes) / Math.max(1e-9, (agoraNs - instanteAntesNs) / 1e9);
+        processadasAntes = total;
+        instanteAntesNs = agoraNs;
+
+        int canais = alvo.canais();
+        if (prontas > 0) {
+            ociosos = 0;
+            double esvaziarS = vazao > 0 ? prontas / vazao : Double.POSITIVE_INFINITY;
+            if (esvaziarS <= tempoAlvoS || canais >= maximo || reduzindo) return;
+            // Vazão proporcional aos canais: para esvaziar no tempo alvo, canais × (tempo previsto / alvo)
+            long desejados = Double.isInfinite(esvaziarS) ? canais + 1 : (long) Math.ceil(canais * esvaziarS / tempoAlvoS);
+            int novo = (int) Math.min(maximo, Math.max(canais + 1, Math.min(2L * canais, desejados)));
+            System.out.printf(" [escala %s] %d prontas na fila, %.1f msg/s: %d -> %d canais%n",
+                    nome, prontas, vazao, canais, novo);
+            try {
+                for (int i = canais; i < novo; i++) {
+                    alvo.abrirCanal();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.aviso("não foi possível abrir um canal para " + nome + ": " + e.getMessage());
+            }
+        } else if (canais > minimo && !reduzindo && ++ociosos >= OCIOSOS_PARA_REDUZIR) {
+            ociosos = 0;
+            System.out.printf(" [escala %s] fila vazia: %d -> %d canais%n", nome, canais, canais - 1);
+            // A drenagem espera as mensagens do canal; fora do agendador para não segurar os outros ajustes
+            reduzindo = true;
+            Thread t = new Thread(() -> {
+                try {
+                    alvo.fecharCanal();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    reduzindo = false;
+                }
+            }, "drenagem-" + nome);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /** Mensagens prontas na fila, por um canal próprio reaberto se o broker o fechar. */
+    private long profundidade() throws IOException {
+        if (controle == null || !controle.isOpen()) {
+            controle = conexao.createChannel();
+        }
+        return controle.queueDeclarePassive(fila).getMessageCount();
+    }
+
+    /** Para as avaliações; um canal que já estava sendo drenado termina por conta própria. */
+    synchronized void encerrar() {
+        if (agendamento != null) agendamento.cancel(false);
+        try {
+            if (controle != null && controle.isOpen()) controle.close();
+        } catch (IOException | TimeoutException e) {
+            // o canal de controle não tem mensagens a preservar
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Decodificação e extração de features do conjunto de treino em paralelo (fork/join).
+ *
+ * O resultado mantém a ordem dos arquivos recebidos, então rótulos e amostras saem sempre na
+ * mesma sequência. Falhas são reportadas arquivo a arquivo e o progresso é impresso a cada 10%.
+ */
+public final class TreinoParalelo {
+
+    /** Resultado do processamento de um arquivo de treino. */
+    public static final class Amostra {
+        public final File arquivo;
+        public final int rotulo;
+        public final double[] features;
+        /** Mensagem de erro, ou null se a amostra foi extraída com sucesso. */
+        public final String erro;
+
+        Amostra(File arquivo, int rotulo, double[] features, String erro) {
+            this.arquivo = arquivo;
+            this.rotulo = rotulo;
+            this.features = features;
+            this.erro = erro;
+        }
+
+        public boolean valida() {
+            return erro == null;
+        }
+    }
+
+    private TreinoParalelo() {
+    }
+
+    /**
+     * @param rotuloPorNome  rótulo a partir do nome do arquivo, ou null para ignorá-lo sem decodificar
+     * @param extrator       features de uma imagem decodificada
+     * @return as amostras rotuladas (válidas ou com erro), na ordem de {@code arquivos}
+     */
+    public static List<Amostra> extrair(File[] arquivos, int paralelismo,
+                                        Function<String, Integer> rotuloPorNome,
+                                        Function<BufferedImage, double[]> extrator) {
+        long inicio = System.nanoTime();
+        AtomicInteger processados = new AtomicInteger();
+        int passoProgresso = Math.max(1, arquivos.length / 10);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, paralelismo));
+        Amostra[] amostras;
+        try {
+            amostras = pool.submit(() -> IntStream.range(0, arquivos.length)
+                    .parallel()
+                    .mapToObj(i -> {
+                        Amostra amostra = processar(arquivos[i], rotuloPorNome, extrator);
+                        int feitos = processados.incrementAndGet();
+                        if (feitos % passoProgresso == 0 || feitos == arquivos.length) {
+                            System.out.println("    treino: " + feitos + "/" + arquivos.length + " arquivos processados");
+                        }
+                        return amostra;
+                    })
+                    .filter(amostra -> amostra != null)
+                    .toArray(Amostra[]::new)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Treino interrompido", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha no treino paralelo", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        long erros = Arrays.stream(amostras).filter(a -> !a.valida()).count();
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        System.out.printf("    treino: %d amostras (%d com erro) em %.2f s, %.1f imagens/s com %d threads%n",
+                amostras.length - erros, erros, segundos, amostras.length / Math.max(segundos, 1e-9), pool.getParallelism());
+        return Arrays.asList(amostras);
+    }
+
+    private static Amostra processar(File arquivo, Function<String, Integer> rotuloPorNome,
+                                     Function<BufferedImage, double[]> extrator) {
+        Integer rotulo = rotuloPorNome.apply(arquivo.getName());
+        if (rotulo == null) return null;
+        try {
+            BufferedImage img = ImageIO.read(arquivo);
+            if (img == null) {
+                return falha(arquivo, rotulo, "nenhum leitor de imagem reconhece o arquivo");
+            }
+            return new Amostra(arquivo, rotulo, extrator.apply(img), null);
+        } catch (Exception e) {
+            return falha(arquivo, rotulo, e.toString());
+        }
+    }
+
+    private static Amostra falha(File arquivo, int rotulo, String erro) {
+        System.err.println("AVISO: falha ao processar imagem de treino " + arquivo.getName() + ": " + erro);
+        return new Amostra(arquivo, rotulo, null, erro);
+    }
+}
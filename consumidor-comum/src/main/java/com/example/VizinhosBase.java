@@ -0,0 +1,137 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Estado comum aos backends próprios: as amostras achatadas em um {@code double[]} (amostra i nas
+ * posições {@code i*dimensao .. i*dimensao+dimensao-1}), as classes codificadas como 0..c-1 e a
+ * seleção dos k melhores candidatos com a votação final.
+ */
+abstract class VizinhosBase implements ClassificadorVizinhos {
+
+    protected final int n;
+    protected final int dimensao;
+    protected final int k;
+    protected final double[] pontos;
+    /** Classe (0..c-1) de cada amostra, na mesma ordem de {@link #pontos}. */
+    protected final int[] classes;
+    /** Rótulo original de cada classe, em ordem crescente. */
+    private final int[] rotulos;
+
+    protected VizinhosBase(double[][] x, int[] y, int k) {
+        if (x.length == 0 || x.length != y.length) {
+            throw new IllegalArgumentException("Conjunto de treino vazio ou com rótulos faltando");
+        }
+        this.n = x.length;
+        this.dimensao = x[0].length;
+        this.k = Math.max(1, Math.min(k, n));
+        this.pontos = new double[n * dimensao];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(x[i], 0, pontos, i * dimensao, dimensao);
+        }
+        this.rotulos = Arrays.stream(y).distinct().sorted().toArray();
+        this.classes = new int[n];
+        for (int i = 0; i < n; i++) {
+            classes[i] = Arrays.binarySearch(rotulos, y[i]);
+        }
+    }
+
+    /** Os k vizinhos mais próximos de {@code x}. */
+    protected abstract Melhores buscar(double[] x);
+
+    /** Os k vizinhos de cada vetor do lote; por padrão, uma busca por vetor. */
+    protected Melhores[] buscarLote(double[][] xs) {
+        Melhores[] melhores = new Melhores[xs.length];
+        for (int q = 0; q < xs.length; q++) {
+            melhores[q] = buscar(xs[q]);
+        }
+        return melhores;
+    }
+
+    @Override
+    public int prever(double[] x) {
+        return buscar(x).votar();
+    }
+
+    @Override
+    public int[] preverLote(double[][] xs) {
+        Melhores[] melhores = buscarLote(xs);
+        int[] predicoes = new int[xs.length];
+        for (int q = 0; q < xs.length; q++) {
+            predicoes[q] = melhores[q].votar();
+        }
+        return predicoes;
+    }
+
+    @Override
+    public int[] preverLote(double[][] xs, float[] confiancas, float[] distancias) {
+        Melhores[] melhores = buscarLote(xs);
+        int[] predicoes = new int[xs.length];
+        for (int q = 0; q < xs.length; q++) {
+            predicoes[q] = melhores[q].votar();
+            confiancas[q] = melhores[q].fracao(predicoes[q]);
+            distancias[q] = (float) Math.sqrt(melhores[q].distancias[0]);
+        }
+        return predicoes;
+    }
+
+    /** Distância euclidiana ao quadrado entre {@code x} e a amostra que começa em {@code inicio}. */
+    protected final double distancia(double[] x, int inicio) {
+        double soma = 0;
+        for (int j = 0; j < dimensao; j++) {
+            double diferenca = x[j] - pontos[inicio + j];
+            soma += diferenca * diferenca;
+        }
+        return soma;
+    }
+
+    /**
+     * Os k melhores candidatos vistos até agora, ordenados por distância. Com k pequeno, a inserção
+     * ordenada em dois arrays é mais barata que uma fila de prioridade.
+     */
+    protected final class Melhores {
+        final double[] distancias = new double[k];
+        final int[] indices = new int[k];
+        int tamanho;
+
+        /** Distância que um candidato precisa vencer para entrar na lista. */
+        double pior() {
+            return tamanho < k ? Double.POSITIVE_INFINITY : distancias[k - 1];
+        }
+
+        void oferecer(double distancia, int indice) {
+            if (distancia >= pior()) return;
+            int pos = tamanho < k ? tamanho++ : k - 1;
+            while (pos > 0 && distancias[pos - 1] > distancia) {
+                distancias[pos] = distancias[pos - 1];
+                indices[pos] = indices[pos - 1];
+                pos--;
+            }
+            distancias[pos] = distancia;
+            indices[pos] = indice;
+        }
+
+        int votar() {
+            if (tamanho == 1) return rotulos[classes[indices[0]]];
+            int[] votos = new int[rotulos.length];
+            for (int i = 0; i < tamanho; i++) {
+                votos[classes[indices[i]]]++;
+            }
+            int vencedora = 0;
+            for (int c = 1; c < votos.length; c++) {
+                if (votos[c] > votos[vencedora]) vencedora = c;
+            }
+            return rotulos[vencedora];
+        }
+
+        /** Fração dos vizinhos encontrados que tem o rótulo {@code rotulo}. */
+        float fracao(int rotulo) {
+            int classe = Arrays.binarySearch(rotulos, rotulo);
+            int votos = 0;
+            for (int i = 0; i < tamanho; i++) {
+                if (classes[indices[i]] == classe) votos++;
+            }
+            return (float) votos / tamanho;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example;
+
+/**
+ * Varredura linear de todas as amostras, lidas em sequência de um único {@code double[]}.
+ *
+ * Sem ponteiros nem desvios por amostra, o laço de distância percorre memória contígua e é
+ * candidato direto à auto-vetorização (ou a uma troca por {@code DoubleVector} da Vector API).
+ * Em lote, a matriz é percorrida uma vez só para todos os vetores.
+ */
+final class VizinhosForcaBruta extends VizinhosBase {
+
+    VizinhosForcaBruta(double[][] x, int[] y, int k) {
+        super(x, y, k);
+    }
+
+    @Override
+    protected Melhores buscar(double[] x) {
+        Melhores melhores = new Melhores();
+        for (int i = 0, inicio = 0; i < n; i++, inicio += dimensao) {
+            melhores.oferecer(distancia(x, inicio), i);
+        }
+        return melhores;
+    }
+
+    /**
+     * Uma única passada pela matriz de treino para o lote inteiro: cada amostra é lida da memória
+     * uma vez e comparada com todos os vetores do lote enquanto ainda está no cache.
+     */
+    @Override
+    protected Melhores[] buscarLote(double[][] xs) {
+        Melhores[] melhores = new Melhores[xs.length];
+        for (int q = 0; q < xs.length; q++) {
+            melhores[q] = new Melhores();
+        }
+        for (int i = 0, inicio = 0; i < n; i++, inicio += dimensao) {
+            for (int q = 0; q < xs.length; q++) {
+                melhores[q].oferecer(distancia(xs[q], inicio), i);
+            }
+        }
+        return melhores;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example;
+
+/**
+ * Árvore k-d sobre o arranjo plano de {@link VizinhosBase}.
+ *
+ * As amostras são reordenadas na construção para que cada folha seja um trecho contíguo de
+ * {@link #pontos}; os nós ficam em arrays paralelos em vez de objetos. Cada nó divide pela mediana
+ * da dimensão de maior amplitude, então a árvore é balanceada mesmo com muitas amostras repetidas.
+ */
+final class VizinhosKdTree extends VizinhosBase {
+
+    /** Amostras por folha: abaixo disso a varredura direta sai mais barata que descer mais um nível. */
+    private static final int FOLHA = 16;
+
+    private final int[] dimensaoCorte;
+    private final double[] valorCorte;
+    private final int[] inicio;
+    private final int[] fim;
+    private final int[] esquerda;
+    private final int[] direita;
+    private int nos;
+
+    VizinhosKdTree(double[][] x, int[] y, int k) {
+        super(x, y, k);
+        int maxNos = 4 * (n / FOLHA + 1);
+        dimensaoCorte = new int[maxNos];
+        valorCorte = new double[maxNos];
+        inicio = new int[maxNos];
+        fim = new int[maxNos];
+        esquerda = new int[maxNos];
+        direita = new int[maxNos];
+        construir(0, n);
+    }
+
+    @Override
+    protected Melhores buscar(double[] x) {
+        Melhores melhores = new Melhores();
+        buscar(0, x, melhores);
+        return melhores;
+    }
+
+    private void buscar(int no, double[] x, Melhores melhores) {
+        if (esquerda[no] < 0) {
+            for (int i = inicio[no]; i < fim[no]; i++) {
+                melhores.oferecer(distancia(x, i * dimensao), i);
+            }
+            return;
+        }
+        double diferenca = x[dimensaoCorte[no]] - valorCorte[no];
+        int perto = diferenca < 0 ? esquerda[no] : direita[no];
+        int longe = diferenca < 0 ? direita[no] : esquerda[no];
+        buscar(perto, x, melhores);
+        // O outro lado só pode ter alguém melhor se o plano de corte estiver mais perto que o pior candidato
+        if (diferenca * diferenca < melhores.pior()) {
+            buscar(longe, x, melhores);
+        }
+    }
+
+    /** Cria o nó para as amostras [de, ate) e devolve o seu índice. */
+    private int construir(int de, int ate) {
+        int no = nos++;
+        inicio[no] = de;
+        fim[no] = ate;
+        if (ate - de <= FOLHA) {
+            esquerda[no] = direita[no] = -1;
+            return no;
+        }
+
+        int dim = dimensaoDeMaiorAmplitude(de, ate);
+        int meio = (de + ate) >>> 1;
+        selecionar(de, ate - 1, meio, dim);
+        dimensaoCorte[no] = dim;
+        valorCorte[no] = pontos[meio * dimensao + dim];
+        esquerda[no] = construir(de, meio);
+        direita[no] = construir(meio, ate);
+        return no;
+    }
+
+    private int dimensaoDeMaiorAmplitude(int de, int ate) {
+        int melhor = 0;
+        double maiorAmplitude = -1;
+        for (int j = 0; j < dimensao; j++) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int i = de; i < ate; i++) {
+                double v = pontos[i * dimensao + j];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            if (max - min > maiorAmplitude) {
+                maiorAmplitude = max - min;
+                melhor = j;
+            }
+        }
+        return melhor;
+    }
+
+    /**
+     * Quickselect: deixa na posição {@code alvo} a amostra que ficaria lá se [esq, dir] fosse
+     * ordenado pela dimensão {@code dim}, com as menores antes e as maiores depois.
+     */
+    private void selecionar(int esq, int dir, int alvo, int dim) {
+        while (esq < dir) {
+            double pivo = pontos[((esq + dir) >>> 1) * dimensao + dim];
+            int i = esq, j = dir;
+            while (i <= j) {
+                while (pontos[i * dimensao + dim] < pivo) i++;
+                while (pontos[j * dimensao + dim] > pivo) j--;
+                if (i <= j) trocar(i++, j--);
+            }
+            if (alvo <= j) dir = j;
+            else if (alvo >= i) esq = i;
+            else return;
+        }
+    }
+
+    private void trocar(int a, int b) {
+        int pa = a * dimensao, pb = b * dimensao;
+        for (int j = 0; j < dimensao; j++) {
+            double t = pontos[pa + j];
+            pontos[pa + j] = pontos[pb + j];
+            pontos[pb + j] = t;
+        }
+        int c = classes[a];
+        classes[a] = classes[b];
+        classes[b] = c;
+    }
+}
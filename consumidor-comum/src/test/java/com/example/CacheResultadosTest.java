@@ -0,0 +1,144 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CacheResultadosTest {
+
+    private static final long VERSAO = 7;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void removeAMenosUsadaQuandoEnche() {
+        CacheResultados cache = new CacheResultados(3, 0);
+        cache.limpar(VERSAO);
+        cache.guardar(1, 100, 10, VERSAO);
+        cache.guardar(2, 200, 20, VERSAO);
+        cache.guardar(3, 300, 30, VERSAO);
+        // Usar a 1 faz da 2 a menos usada
+        assertEquals(10, cache.buscar(1, 100).rotulo);
+        cache.guardar(4, 400, 40, VERSAO);
+
+        assertNull(cache.buscar(2, 200));
+        assertEquals(10, cache.buscar(1, 100).rotulo);
+        assertEquals(30, cache.buscar(3, 300).rotulo);
+        assertEquals(40, cache.buscar(4, 400).rotulo);
+        assertEquals(1, cache.remocoes());
+        assertEquals(4, cache.acertos());
+        assertEquals(1, cache.faltas());
+    }
+
+    @Test
+    void ignoraTamanhoDiferenteEVersaoAntiga() {
+        CacheResultados cache = new CacheResultados(3, 0);
+        cache.limpar(VERSAO);
+        cache.guardar(1, 100, 10, VERSAO);
+        // Mesmo hash com outro tamanho é outra imagem
+        assertNull(cache.buscar(1, 101));
+
+        cache.limpar(VERSAO + 1);
+        assertNull(cache.buscar(1, 100));
+        // Resultado calculado com o modelo anterior que chega depois da troca
+        cache.guardar(2, 200, 20, VERSAO);
+        assertNull(cache.buscar(2, 200));
+    }
+
+    @Test
+    void descartaAsSaidasMenosUsadasAlemDoLimiteDeBytes() {
+        CacheResultados cache = new CacheResultados(10, 100);
+        cache.limpar(VERSAO);
+        cache.guardar(1, 100, 10, VERSAO);
+        cache.guardar(2, 200, 20, VERSAO);
+        cache.guardarSaida(1, 100, new byte[60], VERSAO);
+        cache.guardarSaida(2, 200, new byte[60], VERSAO);
+
+        CacheResultados.Entrada primeira = cache.buscar(1, 100);
+        assertNotNull(primeira);
+        // A predição continua; só a imagem codificada saiu
+        assertNull(primeira.saida());
+        assertEquals(60, cache.buscar(2, 200).saida().length);
+        // Maior que o limite inteiro: nem entra
+        cache.guardar(3, 300, 30, VERSAO);
+        cache.guardarSaida(3, 300, new byte[101], VERSAO);
+        assertNull(cache.buscar(3, 300).saida());
+    }
+
+    @Test
+    void recarregaAsUltimasPredicoesDoAnel() throws IOException {
+        Path arquivo = diretorio.resolve("cache.bin");
+        CacheResultados cache = new CacheResultados(3, 0);
+        cache.abrirArquivo(arquivo, VERSAO);
+        for (int i = 1; i <= 5; i++) {
+            cache.guardar(i, i * 100, i * 10, VERSAO);
+        }
+
+        // O anel dá a volta: sobram as 3 últimas
+        CacheResultados recarregado = new CacheResultados(3, 0);
+        recarregado.abrirArquivo(arquivo, VERSAO);
+        assertNull(recarregado.buscar(1, 100));
+        assertNull(recarregado.buscar(2, 200));
+        int[] rotulos = new int[3];
+        for (int i = 3; i <= 5; i++) {
+            rotulos[i - 3] = recarregado.buscar(i, i * 100).rotulo;
+        }
+        assertArrayEquals(new int[]{30, 40, 50}, rotulos);
+    }
+
+    @Test
+    void anelDeOutroModeloEDescartado() throws IOException {
+        Path arquivo = diretorio.resolve("cache.bin");
+        CacheResultados cache = new CacheResultados(3, 0);
+        cache.abrirArquivo(arquivo, VERSAO);
+        cache.guardar(1, 100, 10, VERSAO);
+
+        CacheResultados outroModelo = new CacheResultados(3, 0);
+        outroModelo.abrirArquivo(arquivo, VERSAO + 1);
+        assertNull(outroModelo.buscar(1, 100));
+
+        // O anel foi reiniciado para o modelo novo
+        CacheResultados deNovo = new CacheResultados(3, 0);
+        deNovo.abrirArquivo(arquivo, VERSAO);
+        assertNull(deNovo.buscar(1, 100));
+    }
+
+    @Test
+    void limparTambemEsvaziaOAnel() throws IOException {
+        Path arquivo = diretorio.resolve("cache.bin");
+        CacheResultados cache = new CacheResultados(3, 0);
+        cache.abrirArquivo(arquivo, VERSAO);
+        cache.guardar(1, 100, 10, VERSAO);
+        cache.limpar(VERSAO + 1);
+        cache.guardar(2, 200, 20, VERSAO + 1);
+
+        CacheResultados recarregado = new CacheResultados(3, 0);
+        recarregado.abrirArquivo(arquivo, VERSAO + 1);
+        assertNull(recarregado.buscar(1, 100));
+        assertEquals(20, recarregado.buscar(2, 200).rotulo);
+    }
+
+    @Test
+    void depoisDeFecharAsPredicoesFicamSoNaMemoria() throws IOException {
+        Path arquivo = diretorio.resolve("cache.bin");
+        CacheResultados cache = new CacheResultados(3, 0);
+        cache.abrirArquivo(arquivo, VERSAO);
+        cache.guardar(1, 100, 10, VERSAO);
+        cache.fechar();
+        cache.guardar(2, 200, 20, VERSAO);
+        assertEquals(20, cache.buscar(2, 200).rotulo);
+
+        CacheResultados recarregado = new CacheResultados(3, 0);
+        recarregado.abrirArquivo(arquivo, VERSAO);
+        assertEquals(10, recarregado.buscar(1, 100).rotulo);
+        assertNull(recarregado.buscar(2, 200));
+    }
+}
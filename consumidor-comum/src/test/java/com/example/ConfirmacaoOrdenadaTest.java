@@ -0,0 +1,106 @@
+package com.example;
+
+import com.rabbitmq.client.Channel;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfirmacaoOrdenadaTest {
+
+    private final RegistroAssincrono log = new RegistroAssincrono("log-teste", 64, "desligado", 1);
+    /** Acks e nacks recebidos pelo canal, na ordem: "ack 3" é cumulativo até a tag 3, "nack 2" é individual. */
+    private final List<String> chamadas = Collections.synchronizedList(new ArrayList<>());
+    private final Channel canal = canalQueRegistra(chamadas);
+
+    @Test
+    void ackAvancaSoAteAMaiorTagSemBuracos() {
+        ConfirmacaoOrdenada confirmacao = new ConfirmacaoOrdenada(canal, log);
+        for (long tag = 1; tag <= 5; tag++) {
+            confirmacao.registrar(tag);
+        }
+        confirmacao.concluir(3);
+        assertEquals(List.of(), chamadas);
+        confirmacao.concluir(1);
+        assertEquals(List.of("ack 1"), chamadas);
+        confirmacao.concluir(2);
+        assertEquals(List.of("ack 1", "ack 3"), chamadas);
+        confirmacao.concluir(5);
+        assertEquals(List.of("ack 1", "ack 3"), chamadas);
+        confirmacao.concluir(4);
+        assertEquals(List.of("ack 1", "ack 3", "ack 5"), chamadas);
+    }
+
+    @Test
+    void devolvidaSaiDasPendentesENaoSeguraOsAcks() {
+        ConfirmacaoOrdenada confirmacao = new ConfirmacaoOrdenada(canal, log);
+        for (long tag = 1; tag <= 4; tag++) {
+            confirmacao.registrar(tag);
+        }
+        confirmacao.concluir(2);
+        confirmacao.devolver(1);
+        assertEquals(List.of("nack 1", "ack 2"), chamadas);
+        // O ack cumulativo passa por cima da tag 3 devolvida, que já foi resolvida pelo nack
+        confirmacao.devolver(3);
+        confirmacao.concluir(4);
+        assertEquals(List.of("nack 1", "ack 2", "nack 3", "ack 4"), chamadas);
+    }
+
+    @Test
+    void acksCumulativosSaemEmOrdemComVariasThreads() throws InterruptedException {
+        int total = 5000;
+        ConfirmacaoOrdenada confirmacao = new ConfirmacaoOrdenada(canal, log);
+        List<Long> tags = new ArrayList<>();
+        for (long tag = 1; tag <= total; tag++) {
+            confirmacao.registrar(tag);
+            tags.add(tag);
+        }
+        Collections.shuffle(tags, new Random(7));
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        for (long tag : tags) {
+            threads.execute(() -> confirmacao.concluir(tag));
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(10, TimeUnit.SECONDS));
+
+        long anterior = 0;
+        for (String chamada : chamadas) {
+            long tag = Long.parseLong(chamada.substring("ack ".length()));
+            assertTrue(tag > anterior, "ack cumulativo fora de ordem: " + chamadas);
+            anterior = tag;
+        }
+        assertEquals(total, anterior);
+    }
+
+    /** Canal que só aceita {@code basicAck(tag, true)} e {@code basicNack(tag, false, true)}. */
+    private static Channel canalQueRegistra(List<String> chamadas) {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[]{Channel.class},
+                (proxy, metodo, argumentos) -> {
+                    switch (metodo.getName()) {
+                        case "basicAck":
+                            assertEquals(Boolean.TRUE, argumentos[1], "o ack deveria ser cumulativo");
+                            chamadas.add("ack " + argumentos[0]);
+                            return null;
+                        case "basicNack":
+                            assertEquals(Boolean.FALSE, argumentos[1], "o nack deveria ser individual");
+                            assertEquals(Boolean.TRUE, argumentos[2], "o nack deveria devolver para a fila");
+                            chamadas.add("nack " + argumentos[0]);
+                            return null;
+                        case "toString":
+                            return "canal de teste";
+                        default:
+                            throw new UnsupportedOperationException(metodo.getName());
+                    }
+                });
+    }
+}
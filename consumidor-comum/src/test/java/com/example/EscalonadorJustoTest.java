@@ -0,0 +1,103 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Com uma permissão só, a ordem em que as filas em espera são atendidas mostra a divisão da CPU:
+ * passa na frente a fila que gastou menos {@code tempo de CPU / peso}, e não a que chegou primeiro
+ * nem a registrada primeiro (que ganha os empates).
+ */
+@Timeout(10)
+class EscalonadorJustoTest {
+
+    private final List<String> ordem = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void semDisputaAAquisicaoEImediata() throws InterruptedException {
+        EscalonadorJusto escalonador = new EscalonadorJusto(2);
+        EscalonadorJusto.Fila faces = escalonador.registrar("faces", 1);
+        EscalonadorJusto.Fila times = escalonador.registrar("times", 1);
+        long inicioFaces = faces.adquirir();
+        long inicioTimes = times.adquirir();
+        faces.liberar(inicioFaces);
+        times.liberar(inicioTimes);
+
+        Thread outra = usar(faces, "faces", 0);
+        outra.join(1000);
+        assertEquals(List.of("faces"), ordem);
+    }
+
+    @Test
+    void filaQueUsouMenosCpuPassaNaFrente() throws InterruptedException {
+        EscalonadorJusto escalonador = new EscalonadorJusto(1);
+        EscalonadorJusto.Fila faces = escalonador.registrar("faces", 1);
+        EscalonadorJusto.Fila times = escalonador.registrar("times", 1);
+
+        long inicio = faces.adquirir();
+        // faces chega primeiro e é a registrada primeiro; mesmo assim times, que não usou nada, vem antes
+        Thread maisFaces = usar(faces, "faces", 0);
+        aguardarEspera(maisFaces);
+        Thread primeiroTime = usar(times, "times", 0);
+        aguardarEspera(primeiroTime);
+        Thread.sleep(20);
+        faces.liberar(inicio);
+
+        maisFaces.join();
+        primeiroTime.join();
+        assertEquals(List.of("times", "faces"), ordem);
+    }
+
+    @Test
+    void pesoMaiorRecebeMaisCpu() throws InterruptedException {
+        EscalonadorJusto escalonador = new EscalonadorJusto(1);
+        EscalonadorJusto.Fila faces = escalonador.registrar("faces", 1);
+        EscalonadorJusto.Fila times = escalonador.registrar("times", 10);
+
+        // As duas usam o mesmo tempo de relógio, mas times paga um décimo dele
+        long inicio = faces.adquirir();
+        Thread.sleep(100);
+        faces.liberar(inicio);
+        inicio = times.adquirir();
+        Thread.sleep(100);
+
+        Thread maisFaces = usar(faces, "faces", 0);
+        aguardarEspera(maisFaces);
+        Thread maisTimes = usar(times, "times", 0);
+        aguardarEspera(maisTimes);
+        times.liberar(inicio);
+
+        maisFaces.join();
+        maisTimes.join();
+        assertEquals(List.of("times", "faces"), ordem);
+    }
+
+    /** Thread que adquire uma permissão da fila, anota o nome e a devolve depois de {@code usoMs}. */
+    private Thread usar(EscalonadorJusto.Fila fila, String nome, long usoMs) {
+        Thread thread = new Thread(() -> {
+            long inicio = fila.adquirir();
+            ordem.add(nome);
+            try {
+                Thread.sleep(usoMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                fila.liberar(inicio);
+            }
+        }, "teste-" + nome);
+        thread.start();
+        return thread;
+    }
+
+    private static void aguardarEspera(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogResultadosTest {
+
+    // Espaço para 4 registros por segmento
+    private static final long SEGMENTO = LogResultados.CABECALHO + 4L * LogResultados.TAMANHO_REGISTRO;
+
+    private final RegistroAssincrono log = new RegistroAssincrono("log-teste", 64, "desligado", 1);
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void rolaOsSegmentosEApagaOsMaisAntigos() throws IOException {
+        LogResultados resultados = new LogResultados(diretorio, SEGMENTO, 3, log);
+        for (int i = 1; i <= 14; i++) {
+            registrar(resultados, i);
+        }
+
+        // 4 segmentos abertos, o primeiro (registros 1 a 4) apagado
+        List<Path> segmentos = LogResultados.segmentos(diretorio);
+        assertEquals(3, segmentos.size());
+        assertEquals("0000000002.seg", segmentos.get(0).getFileName().toString());
+        assertEquals(ids(5, 14), lerIds());
+    }
+
+    @Test
+    void releTodosOsCampos() throws IOException {
+        LogResultados resultados = new LogResultados(diretorio, SEGMENTO, 0, log);
+        resultados.registrar(1_700_000_000_000_000L, 1_699_999_999_000_000L, -1L, 0x1234_5678_9ABC_DEF0L,
+                3, "Borussia Dortmund", 0.75f, 1.5f, 123_456, true,
+                10, 20, 30, 40, 50, Long.MAX_VALUE, "mensagem-7");
+
+        List<LogResultados.Registro> lidos = new ArrayList<>();
+        LogResultados.ler(diretorio, r -> {
+            LogResultados.Registro copia = new LogResultados.Registro();
+            copia.instanteUs = r.instanteUs;
+            copia.publicadoEmUs = r.publicadoEmUs;
+            copia.hashArquivo = r.hashArquivo;
+            copia.hashConteudo = r.hashConteudo;
+            copia.rotulo = r.rotulo;
+            copia.confianca = r.confianca;
+            copia.distancia = r.distancia;
+            copia.tamanhoBytes = r.tamanhoBytes;
+            copia.filaUs = r.filaUs;
+            copia.decodificacaoUs = r.decodificacaoUs;
+            copia.extracaoUs = r.extracaoUs;
+            copia.predicaoUs = r.predicaoUs;
+            copia.anotacaoUs = r.anotacaoUs;
+            copia.pontaAPontaUs = r.pontaAPontaUs;
+            copia.doCache = r.doCache;
+            copia.nomeRotulo = r.nomeRotulo;
+            copia.idMensagem = r.idMensagem;
+            lidos.add(copia);
+        });
+
+        assertEquals(1, lidos.size());
+        LogResultados.Registro r = lidos.get(0);
+        assertEquals(1_700_000_000_000_000L, r.instanteUs);
+        assertEquals(1_699_999_999_000_000L, r.publicadoEmUs);
+        assertEquals(-1L, r.hashArquivo);
+        assertEquals(0x1234_5678_9ABC_DEF0L, r.hashConteudo);
+        assertEquals(3, r.rotulo);
+        assertEquals(0.75f, r.confianca);
+        assertEquals(1.5f, r.distancia);
+        assertEquals(123_456, r.tamanhoBytes);
+        assertEquals(10, r.filaUs);
+        assertEquals(20, r.decodificacaoUs);
+        assertEquals(30, r.extracaoUs);
+        assertEquals(40, r.predicaoUs);
+        assertEquals(50, r.anotacaoUs);
+        // Tempos maiores que um int saturam
+        assertEquals(Integer.MAX_VALUE, r.pontaAPontaUs);
+        assertTrue(r.doCache);
+        assertEquals("Borussia Dortmund", r.nomeRotulo);
+        assertEquals("mensagem-7", r.idMensagem);
+    }
+
+    @Test
+    void textosLongosSaoTruncadosSemCortarCaracteres() throws IOException {
+        LogResultados resultados = new LogResultados(diretorio, SEGMENTO, 0, log);
+        // 23 bytes ASCII e um "é" de 2 bytes: o limite de 24 cairia no meio dele
+        resultados.registrar(0, 0, 0, 0, 1, "a".repeat(23) + "é", 1, 0, 0, false,
+                0, 0, 0, 0, 0, 0, "b".repeat(40));
+
+        List<String> textos = new ArrayList<>();
+        LogResultados.ler(diretorio, r -> {
+            textos.add(r.nomeRotulo);
+            textos.add(r.idMensagem);
+        });
+        assertEquals(List.of("a".repeat(23), "b".repeat(24)), textos);
+    }
+
+    @Test
+    void continuaNoPrimeiroRegistroVazioAoReabrir() throws IOException {
+        LogResultados resultados = new LogResultados(diretorio, SEGMENTO, 0, log);
+        for (int i = 1; i <= 6; i++) {
+            registrar(resultados, i);
+        }
+
+        LogResultados reaberto = new LogResultados(diretorio, SEGMENTO, 0, log);
+        for (int i = 7; i <= 9; i++) {
+            registrar(reaberto, i);
+        }
+
+        // 6 + 3 registros: o segundo segmento foi completado e um terceiro aberto
+        assertEquals(3, LogResultados.segmentos(diretorio).size());
+        assertEquals(ids(1, 9), lerIds());
+    }
+
+    @Test
+    void registrosDepoisDeFecharSaoIgnorados() throws IOException {
+        LogResultados resultados = new LogResultados(diretorio, SEGMENTO, 0, log);
+        registrar(resultados, 1);
+        resultados.fechar();
+        registrar(resultados, 2);
+        resultados.fechar();
+
+        assertEquals(ids(1, 1), lerIds());
+    }
+
+    private static void registrar(LogResultados resultados, int i) {
+        resultados.registrar(i, 0, i, i, i % 5, "rotulo-" + i, 1, 0, 1000 + i, false,
+                0, 0, 0, 0, 0, 0, "msg-" + i);
+    }
+
+    private List<String> lerIds() throws IOException {
+        List<String> lidos = new ArrayList<>();
+        LogResultados.ler(diretorio, r -> {
+            assertEquals(r.instanteUs, r.hashArquivo);
+            assertEquals("rotulo-" + r.instanteUs, r.nomeRotulo);
+            lidos.add(r.idMensagem);
+        });
+        return lidos;
+    }
+
+    private static List<String> ids(int de, int ate) {
+        List<String> ids = new ArrayList<>();
+        for (int i = de; i <= ate; i++) {
+            ids.add("msg-" + i);
+        }
+        return ids;
+    }
+}
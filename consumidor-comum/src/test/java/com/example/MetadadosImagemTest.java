@@ -0,0 +1,148 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** O metadado inserido precisa ser lido de volta pelo ImageIO, com a imagem intacta. */
+class MetadadosImagemTest {
+
+    @Test
+    void pngGanhaUmChunkTextLogoDepoisDoIhdr() throws IOException {
+        BufferedImage original = imagem(BufferedImage.TYPE_INT_ARGB);
+        byte[] png = codificar(original, "png");
+
+        byte[] comTexto = juntar(MetadadosImagem.comTexto(png, "classificacao", "Grêmio"));
+
+        assertEquals(png.length + 12 + "classificacao".length() + 1 + "Grêmio".length(), comTexto.length);
+        List<String> textos = new ArrayList<>();
+        Node raiz = metadados(comTexto).getAsTree("javax_imageio_png_1.0");
+        for (Node entrada : filhos(raiz, "tEXt", "tEXtEntry")) {
+            textos.add(atributo(entrada, "keyword") + "=" + atributo(entrada, "value"));
+        }
+        assertEquals(List.of("classificacao=Grêmio"), textos);
+        mesmosPixels(original, ImageIO.read(new ByteArrayInputStream(comTexto)));
+    }
+
+    @Test
+    void jpegGanhaUmSegmentoComDepoisDosApp() throws IOException {
+        BufferedImage original = imagem(BufferedImage.TYPE_INT_RGB);
+        byte[] jpeg = codificar(original, "jpg");
+
+        byte[] comTexto = juntar(MetadadosImagem.comTexto(jpeg, "classificacao", "Feliz"));
+
+        List<String> comentarios = new ArrayList<>();
+        Node raiz = metadados(comTexto).getAsTree("javax_imageio_jpeg_image_1.0");
+        for (Node com : filhos(raiz, "markerSequence", "com")) {
+            comentarios.add(atributo(com, "comment"));
+        }
+        assertEquals(List.of("classificacao=Feliz"), comentarios);
+        // O JFIF (APP0) continua sendo o primeiro segmento
+        assertEquals(0xE0, comTexto[3] & 0xFF);
+        mesmosPixels(ImageIO.read(new ByteArrayInputStream(jpeg)), ImageIO.read(new ByteArrayInputStream(comTexto)));
+    }
+
+    @Test
+    void outrosFormatosSaemInalterados() throws IOException {
+        byte[] gif = codificar(imagem(BufferedImage.TYPE_INT_RGB), "gif");
+        ByteBuffer[] partes = MetadadosImagem.comTexto(gif, "classificacao", "Feliz");
+        assertEquals(1, partes.length);
+        assertArrayEquals(gif, juntar(partes));
+
+        byte[] truncado = new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H'};
+        assertEquals(1, MetadadosImagem.comTexto(truncado, "classificacao", "Feliz").length);
+    }
+
+    @Test
+    void respeitaAPosicaoDoBuffer() throws IOException {
+        byte[] png = codificar(imagem(BufferedImage.TYPE_INT_ARGB), "png");
+        byte[] comPrefixo = new byte[png.length + 5];
+        System.arraycopy(png, 0, comPrefixo, 5, png.length);
+        ByteBuffer conteudo = ByteBuffer.wrap(comPrefixo);
+        conteudo.position(5);
+
+        assertArrayEquals(juntar(MetadadosImagem.comTexto(png, "k", "v")),
+                juntar(MetadadosImagem.comTexto(conteudo, "k", "v")));
+        assertEquals(5, conteudo.position());
+    }
+
+    private static BufferedImage imagem(int tipo) {
+        BufferedImage img = new BufferedImage(48, 32, tipo);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setRGB(x, y, 0xFF000000 | (x * 5) << 16 | (y * 7) << 8 | (x + y));
+            }
+        }
+        return img;
+    }
+
+    private static byte[] codificar(BufferedImage img, String formato) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, formato, saida)) throw new IOException("Nenhum escritor para " + formato);
+        return saida.toByteArray();
+    }
+
+    private static byte[] juntar(ByteBuffer[] partes) {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        for (ByteBuffer parte : partes) {
+            byte[] bytes = new byte[parte.remaining()];
+            parte.duplicate().get(bytes);
+            saida.writeBytes(bytes);
+        }
+        return saida.toByteArray();
+    }
+
+    private static IIOMetadata metadados(byte[] imagem) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(imagem))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream);
+                return reader.getImageMetadata(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Nós com o nome {@code folha} dentro dos filhos {@code grupo} da raiz. */
+    private static List<Node> filhos(Node raiz, String grupo, String folha) {
+        List<Node> encontrados = new ArrayList<>();
+        for (Node g = raiz.getFirstChild(); g != null; g = g.getNextSibling()) {
+            if (!g.getNodeName().equals(grupo)) continue;
+            for (Node n = g.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n.getNodeName().equals(folha)) encontrados.add(n);
+            }
+        }
+        return encontrados;
+    }
+
+    private static String atributo(Node no, String nome) {
+        return no.getAttributes().getNamedItem(nome).getNodeValue();
+    }
+
+    private static void mesmosPixels(BufferedImage esperada, BufferedImage lida) {
+        assertEquals(esperada.getWidth(), lida.getWidth());
+        assertEquals(esperada.getHeight(), lida.getHeight());
+        for (int y = 0; y < esperada.getHeight(); y++) {
+            for (int x = 0; x < esperada.getWidth(); x++) {
+                assertEquals(esperada.getRGB(x, y), lida.getRGB(x, y));
+            }
+        }
+    }
+}
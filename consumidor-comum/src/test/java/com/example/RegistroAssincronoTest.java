@@ -0,0 +1,71 @@
+package com.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegistroAssincronoTest {
+
+    private final ByteArrayOutputStream saida = new ByteArrayOutputStream();
+    private PrintStream original;
+
+    @BeforeEach
+    void capturarSaida() {
+        original = System.out;
+        System.setOut(new PrintStream(saida, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restaurarSaida() {
+        System.setOut(original);
+    }
+
+    @Test
+    void fecharEscreveTudoQueFoiRegistrado() {
+        RegistroAssincrono log = new RegistroAssincrono("log-teste", 1024, "info", 1);
+        for (int i = 0; i < 500; i++) {
+            log.texto(RegistroAssincrono.INFO, "linha " + i);
+        }
+
+        assertTrue(log.fechar());
+        String texto = saida.toString(StandardCharsets.UTF_8);
+        assertEquals(500, texto.lines().count());
+        assertTrue(texto.endsWith(" INFO linha 499\n"));
+    }
+
+    @Test
+    void registroQueFalhaAoFormatarNaoDerrubaAThread() {
+        RegistroAssincrono log = new RegistroAssincrono("log-teste", 64, "info", 1);
+        Object idQueFalha = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("toString quebrado");
+            }
+        };
+        log.resultado("times", idQueFalha, "a.png", "Flamengo", false, 0, 0, 0, 0, 0);
+        log.aviso("depois da falha");
+
+        assertTrue(log.fechar());
+        String texto = saida.toString(StandardCharsets.UTF_8);
+        assertTrue(texto.contains(" ERRO registro de log não formatado: java.lang.IllegalStateException: toString quebrado\n"), texto);
+        assertTrue(texto.contains(" AVISO depois da falha\n"), texto);
+        // A linha parcial do resultado foi descartada
+        assertFalse(texto.contains("rk=times"), texto);
+    }
+
+    @Test
+    void nivelInvalidoEhRecusado() {
+        RegistroAssincrono log = new RegistroAssincrono("log-teste", 64, "info", 1);
+        assertThrows(IllegalArgumentException.class, () -> log.texto(RegistroAssincrono.DESLIGADO, "x"));
+        assertThrows(IllegalArgumentException.class, () -> log.texto(-1, "x"));
+    }
+}
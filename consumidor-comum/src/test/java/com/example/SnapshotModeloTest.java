@@ -0,0 +1,59 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SnapshotModeloTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void impressaoMudaComOsArquivosEComOExtrator() throws IOException {
+        File[] arquivos = {arquivo("a.png", "um"), arquivo("b.png", "dois")};
+        long impressao = SnapshotModelo.impressaoDiretorio(arquivos, "times|dimensao=6|lado=0");
+
+        assertEquals(impressao, SnapshotModelo.impressaoDiretorio(arquivos, "times|dimensao=6|lado=0"));
+        // Mesmas imagens com outro parâmetro de extração: as features do snapshot não valem mais
+        assertNotEquals(impressao, SnapshotModelo.impressaoDiretorio(arquivos, "times|dimensao=6|lado=256"));
+        assertNotEquals(impressao, SnapshotModelo.impressaoDiretorio(arquivos, "faces|dimensao=6|lado=0"));
+
+        Files.writeString(arquivos[1].toPath(), "outro conteúdo");
+        assertNotEquals(impressao, SnapshotModelo.impressaoDiretorio(arquivos, "times|dimensao=6|lado=0"));
+    }
+
+    @Test
+    void gravaELeDeVolta() throws IOException {
+        double[][] x = {{1, 0, 0.5}, {0, 1, 0.25}, {0.125, 0.75, 1}};
+        int[] y = {3, 1, 3};
+        String[] nomes = {"flamengo.png", "gremio.png", "flamengo-2.jpg"};
+        Path caminho = diretorio.resolve("modelo.bin");
+        new SnapshotModelo(0x1234_5678_9ABCL, 1, x, y, nomes).gravar(caminho);
+
+        SnapshotModelo lido = SnapshotModelo.ler(caminho);
+        assertNotNull(lido);
+        assertEquals(0x1234_5678_9ABCL, lido.impressaoDiretorio);
+        assertEquals(1, lido.k);
+        assertArrayEquals(y, lido.rotulos);
+        assertArrayEquals(nomes, lido.nomes);
+        for (int i = 0; i < x.length; i++) {
+            assertArrayEquals(x[i], lido.matriz()[i]);
+        }
+    }
+
+    private File arquivo(String nome, String conteudo) throws IOException {
+        Path caminho = diretorio.resolve(nome);
+        Files.writeString(caminho, conteudo);
+        return caminho.toFile();
+    }
+}
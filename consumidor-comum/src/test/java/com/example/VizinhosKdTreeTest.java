@@ -0,0 +1,86 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** A árvore k-d poda a busca, mas precisa achar os mesmos vizinhos da varredura completa. */
+class VizinhosKdTreeTest {
+
+    @Test
+    void mesmasPredicoesDaForcaBrutaComAmostrasContinuas() {
+        Random aleatorio = new Random(42);
+        double[][] x = aleatorias(aleatorio, 3000, 6);
+        int[] y = rotulos(aleatorio, x.length, new int[]{0, 1, 2, 3, 99});
+        double[][] consultas = aleatorias(aleatorio, 400, 6);
+
+        for (int k : new int[]{1, 3, 5, 9}) {
+            VizinhosKdTree arvore = new VizinhosKdTree(x, y, k);
+            VizinhosForcaBruta forcaBruta = new VizinhosForcaBruta(x, y, k);
+            mesmasDistancias(arvore, forcaBruta, consultas);
+
+            float[] confiancasArvore = new float[consultas.length];
+            float[] distanciasArvore = new float[consultas.length];
+            float[] confiancasForcaBruta = new float[consultas.length];
+            float[] distanciasForcaBruta = new float[consultas.length];
+            int[] predicoes = forcaBruta.preverLote(consultas, confiancasForcaBruta, distanciasForcaBruta);
+            assertArrayEquals(predicoes, arvore.preverLote(consultas, confiancasArvore, distanciasArvore), "k=" + k);
+            assertArrayEquals(confiancasForcaBruta, confiancasArvore, "k=" + k);
+            assertArrayEquals(distanciasForcaBruta, distanciasArvore, "k=" + k);
+            for (int q = 0; q < consultas.length; q++) {
+                assertEquals(predicoes[q], arvore.prever(consultas[q]));
+            }
+        }
+    }
+
+    @Test
+    void mesmasDistanciasComAmostrasRepetidas() {
+        // Vetores one-hot como os dos escudos: muitas amostras idênticas e empates de distância
+        Random aleatorio = new Random(7);
+        double[][] x = new double[500][6];
+        for (double[] amostra : x) {
+            amostra[aleatorio.nextInt(6)] = 1;
+        }
+        int[] y = rotulos(aleatorio, x.length, new int[]{0, 1, 2, 3, 4});
+        double[][] consultas = new double[7][6];
+        for (int q = 0; q < 6; q++) {
+            consultas[q][q] = 1;
+        }
+
+        for (int k : new int[]{1, 3, 15}) {
+            mesmasDistancias(new VizinhosKdTree(x, y, k), new VizinhosForcaBruta(x, y, k), consultas);
+        }
+    }
+
+    /** As distâncias dos k vizinhos; com empates, quais amostras entram pode variar, as distâncias não. */
+    private static void mesmasDistancias(VizinhosKdTree arvore, VizinhosForcaBruta forcaBruta, double[][] consultas) {
+        for (double[] consulta : consultas) {
+            VizinhosBase.Melhores esperados = forcaBruta.buscar(consulta);
+            VizinhosBase.Melhores encontrados = arvore.buscar(consulta);
+            assertEquals(esperados.tamanho, encontrados.tamanho);
+            assertArrayEquals(esperados.distancias, encontrados.distancias, Arrays.toString(consulta));
+        }
+    }
+
+    private static double[][] aleatorias(Random aleatorio, int n, int dimensao) {
+        double[][] x = new double[n][dimensao];
+        for (double[] amostra : x) {
+            for (int j = 0; j < dimensao; j++) {
+                amostra[j] = aleatorio.nextDouble();
+            }
+        }
+        return x;
+    }
+
+    private static int[] rotulos(Random aleatorio, int n, int[] possiveis) {
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = possiveis[aleatorio.nextInt(possiveis.length)];
+        }
+        return y;
+    }
+}
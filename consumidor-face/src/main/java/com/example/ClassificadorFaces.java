@@ -0,0 +1,166 @@
+package com.example;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Classifica expressões faciais (feliz ou triste) pela cor de fundo e pela proporção de pixels
+ * escuros nas metades de cima e de baixo da janela da boca.
+ */
+public class ClassificadorFaces implements Classificador {
+
+    @Override
+    public String nome() {
+        return "faces";
+    }
+
+    @Override
+    public String fila() {
+        return "fila_faces";
+    }
+
+    @Override
+    public String routingKey() {
+        return "face.#";
+    }
+
+    @Override
+    public String diretorioTreino() {
+        return "/app/imagenstreino/image-faces";
+    }
+
+    @Override
+    public String diretorioSaida() {
+        return "/app/imagens-recebidas-face";
+    }
+
+    @Override
+    public String formatoSaida() {
+        return "jpg";
+    }
+
+    @Override
+    public Integer rotuloDeTreino(String nomeArquivo) {
+        String nome = nomeArquivo.toUpperCase();
+        if (nome.startsWith("FELIZ")) return 1;
+        if (nome.startsWith("TRISTE")) return 0;
+        return null;
+    }
+
+    @Override
+    public String nomeDoRotulo(int rotulo) {
+        return (rotulo == 1) ? "FELIZ" : "TRISTE";
+    }
+
+    @Override
+    public int k(int amostras) {
+        int k = Math.min(3, amostras - 1);
+        return Math.max(k, 1);
+    }
+
+    @Override
+    public String versaoFeatures() {
+        return "cantos-e-boca-1";
+    }
+
+    @Override
+    public double[][] amostrasFallback() {
+        return new double[][]{{0, 0, 0, 0, 0, 0}, {1, 1, 1, 1, 1, 1}};
+    }
+
+    @Override
+    public int[] rotulosFallback() {
+        return new int[]{0, 1};
+    }
+
+    @Override
+    public double[] extrairFeatures(BufferedImage img) {
+        double[] featuresBoca = extrairFeaturesBoca(img);
+        double[] featuresCor = extrairFeaturesCorDeFundo(img);
+        return new double[]{featuresCor[0], featuresCor[1], featuresCor[2], featuresBoca[0], featuresBoca[1], featuresBoca[2]};
+    }
+
+    /**
+     * Mesmas features de {@link #extrairFeatures(BufferedImage)}, decodificando só o necessário:
+     * uma grade 2x2 com os pixels dos cantos e o recorte da janela da boca.
+     */
+    @Override
+    public double[] extrairFeatures(DecodificadorImagem decodificador) throws IOException {
+        int largura = decodificador.largura(), altura = decodificador.altura();
+        double[] featuresBoca = extrairFeaturesBoca(decodificador, largura, altura);
+        double[] featuresCor = extrairFeaturesCorDeFundo(decodificador, largura, altura);
+        return new double[]{featuresCor[0], featuresCor[1], featuresCor[2], featuresBoca[0], featuresBoca[1], featuresBoca[2]};
+    }
+
+    private static double[] extrairFeaturesCorDeFundo(DecodificadorImagem decodificador, int largura, int altura) throws IOException {
+        if (largura < 2 || altura < 2) return new double[]{0.0, 0.0, 0.0};
+        if (largura < 4 || altura < 4) return extrairFeaturesCorDeFundo(decodificador.lerCompleta());
+        // Região de (1,1) até (largura-2, altura-2) com passo largura-3/altura-3: exatamente os 4 cantos amostrados
+        BufferedImage cantos = decodificador.lerGrade(new Rectangle(1, 1, largura - 2, altura - 2), largura - 3, altura - 3);
+        return mediaDosCantos(cantos.getRGB(0, 0), cantos.getRGB(1, 0), cantos.getRGB(0, 1), cantos.getRGB(1, 1));
+    }
+
+    private static double[] extrairFeaturesBoca(DecodificadorImagem decodificador, int largura, int altura) throws IOException {
+        Rectangle janela = janelaBoca(largura, altura).intersection(new Rectangle(0, 0, largura, altura));
+        if (janela.isEmpty()) return new double[]{0.0, 0.0, 0.0};
+        return extrairFeaturesBoca(decodificador.lerRegiao(janela), janela.x, janela.y, largura, altura);
+    }
+
+    private static double[] extrairFeaturesCorDeFundo(BufferedImage img) {
+        if (img == null || img.getWidth() < 2 || img.getHeight() < 2) return new double[]{0.0, 0.0, 0.0};
+        return mediaDosCantos(img.getRGB(1, 1), img.getRGB(img.getWidth() - 2, 1),
+                img.getRGB(1, img.getHeight() - 2), img.getRGB(img.getWidth() - 2, img.getHeight() - 2));
+    }
+
+    private static double[] mediaDosCantos(int rgb1, int rgb2, int rgb3, int rgb4) {
+        Color c1 = new Color(rgb1);
+        Color c2 = new Color(rgb2);
+        Color c3 = new Color(rgb3);
+        Color c4 = new Color(rgb4);
+        double avgR = (c1.getRed() + c2.getRed() + c3.getRed() + c4.getRed()) / 4.0;
+        double avgG = (c1.getGreen() + c2.getGreen() + c3.getGreen() + c4.getGreen()) / 4.0;
+        double avgB = (c1.getBlue() + c2.getBlue() + c3.getBlue() + c4.getBlue()) / 4.0;
+        return new double[]{avgR, avgG, avgB};
+    }
+
+    private static Rectangle janelaBoca(int width, int height) {
+        int bocaTop = (int) (2 * height / 3.0) - 20;
+        int bocaLeft = width / 2 - 40;
+        return new Rectangle(bocaLeft, bocaTop, 80, 40);
+    }
+
+    private static double[] extrairFeaturesBoca(BufferedImage img) {
+        if (img == null) return new double[]{0.0, 0.0, 0.0};
+        return extrairFeaturesBoca(img, 0, 0, img.getWidth(), img.getHeight());
+    }
+
+    /**
+     * @param janela  imagem (ou recorte dela) cujo pixel (0,0) corresponde a (origemX, origemY) na imagem original
+     */
+    private static double[] extrairFeaturesBoca(BufferedImage janela, int origemX, int origemY, int width, int height) {
+        int bocaTop = (int) (2 * height / 3.0) - 20, bocaBottom = bocaTop + 40;
+        int bocaLeft = width / 2 - 40, bocaRight = width / 2 + 40;
+        int midY = (bocaTop + bocaBottom) / 2;
+        long topBlack = 0, bottomBlack = 0, topTotalPixels = 0, bottomTotalPixels = 0;
+        for (int y = bocaTop; y < bocaBottom; y++) {
+            for (int x = bocaLeft; x < bocaRight; x++) {
+                if (x >= 0 && x < width && y >= 0 && y < height) {
+                    int rgb = janela.getRGB(x - origemX, y - origemY);
+                    boolean isBlack = ((rgb >> 16) & 0xFF) < 50 && ((rgb >> 8) & 0xFF) < 50 && (rgb & 0xFF) < 50;
+                    if (y < midY) {
+                        topTotalPixels++;
+                        if (isBlack) topBlack++;
+                    } else {
+                        bottomTotalPixels++;
+                        if (isBlack) bottomBlack++;
+                    }
+                }
+            }
+        }
+        double topRatio = (topTotalPixels > 0) ? (double) topBlack / topTotalPixels : 0.0;
+        double bottomRatio = (bottomTotalPixels > 0) ? (double) bottomBlack / bottomTotalPixels : 0.0;
+        return new double[]{topRatio, bottomRatio, topRatio - bottomRatio};
+    }
+}
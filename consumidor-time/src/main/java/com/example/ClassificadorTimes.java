@@ -0,0 +1,103 @@
+package com.example;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Classifica escudos de times pela cor dominante ({@link ExtratorCorDominante}).
+ */
+public class ClassificadorTimes implements Classificador {
+
+    // Com LADO_FEATURES > 0 a cor dominante é calculada sobre uma grade subamostrada da imagem, com o
+    // maior lado perto desse valor. Treino, imagens anotadas (decodificadas inteiras) e o decodificador
+    // (que só decodifica a grade) contam os mesmos pixels. Com 0 (padrão) a imagem inteira é usada,
+    // exatamente como o extrator original.
+    private static final int LADO_FEATURES = Math.max(0, Config.lerConfig(Config.variavel("times", "LADO_FEATURES"), 0));
+
+    @Override
+    public String nome() {
+        return "times";
+    }
+
+    @Override
+    public String fila() {
+        return "fila_times";
+    }
+
+    @Override
+    public String routingKey() {
+        return "team.#";
+    }
+
+    @Override
+    public String diretorioTreino() {
+        return "/app/imagenstreino/image-times";
+    }
+
+    @Override
+    public String diretorioSaida() {
+        return "/app/imagens-recebidas-time";
+    }
+
+    @Override
+    public String formatoSaida() {
+        return "png";
+    }
+
+    @Override
+    public Integer rotuloDeTreino(String nomeArquivo) {
+        String nome = nomeArquivo.toLowerCase();
+        if (nome.startsWith("fluminense")) return 3;
+        if (nome.startsWith("flamengo")) return 0;
+        if (nome.startsWith("borussia-dortmund")) return 1;
+        if (nome.startsWith("gremio")) return 2;
+        if (nome.startsWith("vfl-wolfsburg")) return 4;
+        return null;
+    }
+
+    @Override
+    public String nomeDoRotulo(int rotulo) {
+        switch (rotulo) {
+            case 0: return "Flamengo";
+            case 1: return "Borussia Dortmund";
+            case 2: return "Gremio";
+            case 3: return "Fluminense";
+            case 4: return "Wolfsburg";
+            default: return "Desconhecido";
+        }
+    }
+
+    @Override
+    public int k(int amostras) {
+        return 1;
+    }
+
+    @Override
+    public double[] extrairFeatures(BufferedImage img) {
+        if (img == null || LADO_FEATURES == 0) return ExtratorCorDominante.extrair(img);
+        return ExtratorCorDominante.extrair(img,
+                DecodificadorImagem.passoSubamostragem(img.getWidth(), img.getHeight(), LADO_FEATURES));
+    }
+
+    @Override
+    public double[] extrairFeatures(DecodificadorImagem decodificador) throws IOException {
+        if (LADO_FEATURES == 0) return ExtratorCorDominante.extrair(decodificador.lerCompleta());
+        return ExtratorCorDominante.extrair(decodificador.lerSubamostrada(LADO_FEATURES));
+    }
+
+    @Override
+    public String versaoFeatures() {
+        return "cor-dominante-1 lado=" + LADO_FEATURES;
+    }
+
+    @Override
+    public double[][] amostrasFallback() {
+        return new double[][]{{0, 0, 0, 0, 0, 0}};
+    }
+
+    @Override
+    public int[] rotulosFallback() {
+        // Fora dos rótulos conhecidos: toda imagem sai como "Desconhecido"
+        return new int[]{99};
+    }
+}
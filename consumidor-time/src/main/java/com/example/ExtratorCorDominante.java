@@ -0,0 +1,225 @@
+package com.example;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Extrator da cor dominante de escudos em uma única passada e sem alocar objetos por pixel.
+ *
+ * Lê diretamente o {@code int[]}/{@code byte[]} do raster quando o tipo da imagem permite e, nos
+ * demais casos, uma linha por vez com {@code getRGB} em lote. Saturação e brilho saem de tabelas
+ * pré-calculadas com as mesmas contas em float de {@link java.awt.Color#RGBtoHSB}; o matiz só é
+ * calculado para pixels saturados. {@link #extrair(BufferedImage)} devolve o mesmo vetor de 6
+ * posições do método original.
+ *
+ * {@link #extrair(BufferedImage, int)} com {@code passo > 1} conta só um pixel a cada {@code passo}
+ * colunas e linhas, a partir de (0, 0): a mesma grade que {@link DecodificadorImagem#lerSubamostrada}
+ * decodifica. O resultado pode então diferir do original; só é usado quando a subamostragem é pedida.
+ */
+public final class ExtratorCorDominante {
+
+    private static final int VERMELHO_FORTE = 0;
+    private static final int VERMELHO_ESCURO = 1;
+    private static final int AMARELO = 2;
+    private static final int AZUL = 3;
+    private static final int VERDE_ESCURO = 4;
+    private static final int VERDE_CLARO = 5;
+    private static final int NENHUM = -1;
+
+    /** SATURADO[cmax * 256 + (cmax - cmin)]: saturação HSB > 0.4 */
+    private static final boolean[] SATURADO = new boolean[256 * 256];
+    /** CLARO[cmax]: brilho HSB > 0.6 */
+    private static final boolean[] CLARO = new boolean[256];
+
+    static {
+        for (int cmax = 0; cmax < 256; cmax++) {
+            float brightness = ((float) cmax) / 255.0f;
+            CLARO[cmax] = brightness > 0.6;
+            for (int delta = 0; delta <= cmax; delta++) {
+                float saturation = (cmax != 0) ? ((float) delta) / ((float) cmax) : 0;
+                SATURADO[cmax * 256 + delta] = saturation > 0.4;
+            }
+        }
+    }
+
+    private ExtratorCorDominante() {
+    }
+
+    public static double[] extrair(BufferedImage img) {
+        return extrair(img, 1);
+    }
+
+    public static double[] extrair(BufferedImage img, int passo) {
+        if (img == null) return new double[]{0,0,0,0,0};
+
+        passo = Math.max(1, passo);
+        int[] contagem = new int[6];
+        if (img.getColorModel() instanceof IndexColorModel) {
+            contarPorPaleta(img, passo, contagem);
+        } else if (!contarPorRaster(img, passo, contagem)) {
+            contarPorLinha(img, passo, contagem);
+        }
+        return vetorDominante(contagem);
+    }
+
+    /**
+     * Caminho rápido: percorre o array de dados do raster. Retorna false para layouts não suportados.
+     */
+    private static boolean contarPorRaster(BufferedImage img, int passo, int[] contagem) {
+        Raster raster = img.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        int largura = img.getWidth(), altura = img.getHeight();
+        int tx = -raster.getSampleModelTranslateX(), ty = -raster.getSampleModelTranslateY();
+
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                if (!(sm instanceof SinglePixelPackedSampleModel) || buffer.getNumBanks() != 1) return false;
+                int[] dados = ((DataBufferInt) buffer).getData();
+                int linha = ((SinglePixelPackedSampleModel) sm).getScanlineStride();
+                int base = buffer.getOffset() + ty * linha + tx;
+                int alfaFixo = img.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+                for (int y = 0; y < altura; y += passo) {
+                    int i = base + y * linha;
+                    for (int x = 0; x < largura; x += passo) {
+                        contar(dados[i + x] | alfaFixo, contagem);
+                    }
+                }
+                return true;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                if (!(sm instanceof ComponentSampleModel) || buffer.getNumBanks() != 1) return false;
+                ComponentSampleModel csm = (ComponentSampleModel) sm;
+                byte[] dados = ((DataBufferByte) buffer).getData();
+                int passoPixel = csm.getPixelStride();
+                int linha = csm.getScanlineStride();
+                int[] bandas = csm.getBandOffsets();
+                boolean temAlfa = bandas.length == 4;
+                int base = buffer.getOffset() + ty * linha + tx * passoPixel;
+                int salto = passoPixel * passo;
+                for (int y = 0; y < altura; y += passo) {
+                    int i = base + y * linha;
+                    for (int x = 0; x < largura; x += passo, i += salto) {
+                        int a = temAlfa ? dados[i + bandas[3]] & 0xFF : 0xFF;
+                        int r = dados[i + bandas[0]] & 0xFF;
+                        int g = dados[i + bandas[1]] & 0xFF;
+                        int b = dados[i + bandas[2]] & 0xFF;
+                        contar((a << 24) | (r << 16) | (g << 8) | b, contagem);
+                    }
+                }
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Imagens com paleta (a maioria dos escudos PNG): classifica cada cor da paleta uma única vez
+     * e depois só conta os índices lidos do raster.
+     */
+    private static void contarPorPaleta(BufferedImage img, int passo, int[] contagem) {
+        IndexColorModel paleta = (IndexColorModel) img.getColorModel();
+        int[] baldePorIndice = new int[1 << paleta.getPixelSize()];
+        Arrays.fill(baldePorIndice, NENHUM);
+        for (int i = 0; i < paleta.getMapSize(); i++) {
+            baldePorIndice[i] = classificar(paleta.getRGB(i));
+        }
+
+        Raster raster = img.getRaster();
+        int largura = img.getWidth();
+        int[] indices = new int[largura];
+        for (int y = 0; y < img.getHeight(); y += passo) {
+            raster.getSamples(0, y, largura, 1, 0, indices);
+            for (int x = 0; x < largura; x += passo) {
+                int balde = baldePorIndice[indices[x]];
+                if (balde != NENHUM) contagem[balde]++;
+            }
+        }
+    }
+
+    /**
+     * Caminho genérico (tons de cinza, pré-multiplicadas, 565...): {@code getRGB} em lote por linha.
+     */
+    private static void contarPorLinha(BufferedImage img, int passo, int[] contagem) {
+        int largura = img.getWidth();
+        int[] linha = new int[largura];
+        for (int y = 0; y < img.getHeight(); y += passo) {
+            img.getRGB(0, y, largura, 1, linha, 0, largura);
+            for (int x = 0; x < largura; x += passo) {
+                contar(linha[x], contagem);
+            }
+        }
+    }
+
+    private static void contar(int argb, int[] contagem) {
+        int balde = classificar(argb);
+        if (balde != NENHUM) contagem[balde]++;
+    }
+
+    /**
+     * Classifica um pixel ARGB em um dos 6 baldes de cor, ou {@link #NENHUM}.
+     */
+    static int classificar(int argb) {
+        if ((argb >>> 24) < 100) return NENHUM;
+
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+
+        if ((r > 220 && g > 220 && b > 220) || (r < 40 && g < 40 && b < 40)) return NENHUM;
+
+        int cmax = Math.max(r, Math.max(g, b));
+        int cmin = Math.min(r, Math.min(g, b));
+        if (!SATURADO[cmax * 256 + (cmax - cmin)]) return NENHUM;
+
+        // Mesmas operações em float de Color.RGBtoHSB, para que os limites de cada faixa batam exatamente
+        float delta = (float) (cmax - cmin);
+        float hue;
+        if (r == cmax) {
+            hue = ((float) (cmax - b)) / delta - ((float) (cmax - g)) / delta;
+        } else if (g == cmax) {
+            hue = 2.0f + ((float) (cmax - r)) / delta - ((float) (cmax - b)) / delta;
+        } else {
+            hue = 4.0f + ((float) (cmax - g)) / delta - ((float) (cmax - r)) / delta;
+        }
+        hue = hue / 6.0f;
+        if (hue < 0) hue = hue + 1.0f;
+
+        if ((hue >= 0.0 && hue < 0.05) || (hue > 0.95)) {
+            return CLARO[cmax] ? VERMELHO_FORTE : VERMELHO_ESCURO;
+        } else if (hue >= 0.14 && hue < 0.19) {
+            return AMARELO;
+        } else if (hue >= 0.58 && hue < 0.7) {
+            return AZUL;
+        } else if (hue >= 0.25 && hue < 0.45) {
+            return CLARO[cmax] ? VERDE_CLARO : VERDE_ESCURO;
+        }
+        return NENHUM;
+    }
+
+    private static double[] vetorDominante(int[] contagem) {
+        int maxCount = 0;
+        for (int c : contagem) maxCount = Math.max(maxCount, c);
+
+        if (maxCount == 0) return new double[]{0,0,0,0,0,0}; // Nenhuma cor dominante
+
+        // Mesma ordem de desempate do método original
+        if (maxCount == contagem[VERMELHO_FORTE])  return new double[]{1,0,0,0,0,0}; // Flamengo
+        if (maxCount == contagem[VERMELHO_ESCURO]) return new double[]{0,1,0,0,0,0}; // Fluminense
+        if (maxCount == contagem[AMARELO])         return new double[]{0,0,1,0,0,0}; // Borussia
+        if (maxCount == contagem[AZUL])            return new double[]{0,0,0,1,0,0}; // Gremio
+        if (maxCount == contagem[VERDE_ESCURO])    return new double[]{0,0,0,0,1,0}; // Fluminense
+        return new double[]{0,0,0,0,0,1}; // Wolfsburg
+    }
+}
@@ -0,0 +1,101 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * O treino e as imagens anotadas extraem features da imagem inteira; sem anotação, do decodificador.
+ * Os dois caminhos precisam contar os mesmos pixels, senão o modelo é treinado com uma coisa e
+ * consultado com outra.
+ */
+class ClassificadorTimesTest {
+
+    private static final int LADO = 64;
+
+    private final ClassificadorTimes classificador = new ClassificadorTimes();
+
+    @Test
+    void decodificadorLeAMesmaGradeDaImagemInteira() throws IOException {
+        for (byte[] bytes : imagens()) {
+            BufferedImage inteira = ImageIO.read(new ByteArrayInputStream(bytes));
+            int passo = DecodificadorImagem.passoSubamostragem(inteira.getWidth(), inteira.getHeight(), LADO);
+            try (DecodificadorImagem decodificador = DecodificadorImagem.abrir(bytes)) {
+                BufferedImage grade = decodificador.lerSubamostrada(LADO);
+                assertEquals((inteira.getWidth() + passo - 1) / passo, grade.getWidth());
+                assertEquals((inteira.getHeight() + passo - 1) / passo, grade.getHeight());
+                for (int y = 0; y < grade.getHeight(); y++) {
+                    for (int x = 0; x < grade.getWidth(); x++) {
+                        assertEquals(inteira.getRGB(x * passo, y * passo), grade.getRGB(x, y));
+                    }
+                }
+                assertArrayEquals(ExtratorCorDominante.extrair(inteira, passo), ExtratorCorDominante.extrair(grade));
+            }
+        }
+    }
+
+    @Test
+    void featuresNaoDependemDoCaminho() throws IOException {
+        for (byte[] bytes : imagens()) {
+            BufferedImage inteira = ImageIO.read(new ByteArrayInputStream(bytes));
+            try (DecodificadorImagem decodificador = DecodificadorImagem.abrir(bytes)) {
+                assertArrayEquals(classificador.extrairFeatures(inteira), classificador.extrairFeatures(decodificador));
+            }
+        }
+    }
+
+    @Test
+    void passoContaSoAGrade() {
+        // Amarelo só nos pixels da grade de passo 4, azul no resto
+        BufferedImage img = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 40; y++) {
+            for (int x = 0; x < 40; x++) {
+                img.setRGB(x, y, x % 4 == 0 && y % 4 == 0 ? 0xFFE000 : 0x1040C0);
+            }
+        }
+        assertArrayEquals(new double[]{0, 0, 0, 1, 0, 0}, ExtratorCorDominante.extrair(img));
+        assertArrayEquals(new double[]{0, 0, 1, 0, 0, 0}, ExtratorCorDominante.extrair(img, 4));
+    }
+
+    /** Os escudos de imagens/image-times e imagens sintéticas grandes em JPEG e PNG. */
+    private static List<byte[]> imagens() throws IOException {
+        List<byte[]> imagens = new ArrayList<>();
+        File[] escudos = new File("../imagens/image-times").listFiles();
+        if (escudos != null) {
+            for (File escudo : escudos) {
+                imagens.add(Files.readAllBytes(escudo.toPath()));
+            }
+        }
+        Random aleatorio = new Random(1);
+        for (String formato : new String[]{"jpg", "png"}) {
+            for (int[] tamanho : new int[][]{{1920, 1080}, {1001, 777}, {300, 300}}) {
+                BufferedImage img = new BufferedImage(tamanho[0], tamanho[1], BufferedImage.TYPE_INT_RGB);
+                for (int y = 0; y < tamanho[1]; y++) {
+                    for (int x = 0; x < tamanho[0]; x++) {
+                        img.setRGB(x, y, (x / 37 + y / 53) % 4 == 0 ? 0xFFE000 : aleatorio.nextInt(0x1000000));
+                    }
+                }
+                ByteArrayOutputStream saida = new ByteArrayOutputStream();
+                ImageIO.write(img, formato, saida);
+                imagens.add(saida.toByteArray());
+            }
+        }
+        for (byte[] bytes : imagens) {
+            assertNotNull(ImageIO.read(new ByteArrayInputStream(bytes)));
+        }
+        return imagens;
+    }
+}
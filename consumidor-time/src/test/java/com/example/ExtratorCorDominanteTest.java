@@ -0,0 +1,198 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ExtratorCorDominante#extrair(BufferedImage)} precisa devolver o mesmo vetor do método
+ * original de {@code ConsumidorTime} (copiado abaixo) para qualquer imagem: os escudos de treino,
+ * cada layout de raster que ele lê direto e as cores nos limites de matiz, saturação, brilho e alfa.
+ */
+class ExtratorCorDominanteTest {
+
+    private static final int[] TIPOS = {
+            BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB,
+            BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY
+    };
+
+    private static final List<Integer> LIMITES = coresNosLimites();
+
+    @Test
+    void escudosDeTreino() throws IOException {
+        File[] escudos = new File("../imagens/image-times").listFiles();
+        assertNotNull(escudos, "imagens/image-times não encontrado");
+        for (File escudo : escudos) {
+            BufferedImage img = ImageIO.read(escudo);
+            assertArrayEquals(original(img), ExtratorCorDominante.extrair(img), escudo.getName());
+        }
+    }
+
+    @Test
+    void cadaCorNosLimitesIsolada() {
+        assertTrue(LIMITES.size() > 1000, "poucas cores de limite: " + LIMITES.size());
+        BufferedImage pixel = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        for (int argb : LIMITES) {
+            pixel.setRGB(0, 0, argb);
+            assertArrayEquals(original(pixel), ExtratorCorDominante.extrair(pixel), Integer.toHexString(argb));
+        }
+    }
+
+    @Test
+    void cadaTipoDeImagem() {
+        Random aleatorio = new Random(3);
+        for (int tipo : TIPOS) {
+            for (int repeticao = 0; repeticao < 20; repeticao++) {
+                BufferedImage img = new BufferedImage(97, 61, tipo);
+                preencher(img, aleatorio);
+                assertArrayEquals(original(img), ExtratorCorDominante.extrair(img), "tipo " + tipo + ", repetição " + repeticao);
+            }
+        }
+    }
+
+    @Test
+    void paletaComTransparencia() {
+        // Paleta só com cores de limite, parte delas com alfa perto do corte de 100
+        Random aleatorio = new Random(5);
+        for (int repeticao = 0; repeticao < 20; repeticao++) {
+            int[] cores = new int[256];
+            for (int i = 0; i < cores.length; i++) {
+                cores[i] = LIMITES.get(aleatorio.nextInt(LIMITES.size()));
+            }
+            IndexColorModel paleta = new IndexColorModel(8, cores.length, cores, 0, true, -1, DataBuffer.TYPE_BYTE);
+            BufferedImage img = new BufferedImage(64, 48, BufferedImage.TYPE_BYTE_INDEXED, paleta);
+            for (int y = 0; y < img.getHeight(); y++) {
+                for (int x = 0; x < img.getWidth(); x++) {
+                    img.getRaster().setSample(x, y, 0, aleatorio.nextInt(cores.length));
+                }
+            }
+            assertArrayEquals(original(img), ExtratorCorDominante.extrair(img), "repetição " + repeticao);
+        }
+    }
+
+    @Test
+    void recortesDeRaster() {
+        // Subimagens compartilham o raster com deslocamento; o caminho rápido precisa respeitá-lo
+        Random aleatorio = new Random(9);
+        for (int tipo : TIPOS) {
+            BufferedImage img = new BufferedImage(80, 60, tipo);
+            preencher(img, aleatorio);
+            BufferedImage recorte = img.getSubimage(13, 7, 41, 29);
+            assertArrayEquals(original(recorte), ExtratorCorDominante.extrair(recorte), "tipo " + tipo);
+        }
+    }
+
+    @Test
+    void imagemNula() {
+        assertArrayEquals(original(null), ExtratorCorDominante.extrair(null));
+    }
+
+    /** Cores de limite com poucos pixels de fundo, para o balde dominante ficar sensível a cada pixel. */
+    private static void preencher(BufferedImage img, Random aleatorio) {
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                int argb = aleatorio.nextInt(8) == 0 ? aleatorio.nextInt() : LIMITES.get(aleatorio.nextInt(LIMITES.size()));
+                img.setRGB(x, y, argb);
+            }
+        }
+    }
+
+    /**
+     * Cores a menos de um passo de cada limite do método original: matiz nas bordas das faixas,
+     * saturação perto de 0.4, brilho perto de 0.6, os cortes de branco/preto e o alfa perto de 100.
+     */
+    private static List<Integer> coresNosLimites() {
+        float[] limitesMatiz = {0.05f, 0.14f, 0.19f, 0.25f, 0.45f, 0.58f, 0.7f, 0.95f};
+        List<Integer> cores = new ArrayList<>();
+        float[] hsb = new float[3];
+        for (int r = 0; r < 256; r++) {
+            for (int g = 0; g < 256; g++) {
+                for (int b = 0; b < 256; b++) {
+                    Color.RGBtoHSB(r, g, b, hsb);
+                    boolean limite = Math.abs(hsb[1] - 0.4f) < 0.002f || Math.abs(hsb[2] - 0.6f) < 0.002f
+                            || ((r == 220 || r == 221 || r == 39 || r == 40) && (g == r || b == r));
+                    for (float matiz : limitesMatiz) {
+                        limite |= Math.abs(hsb[0] - matiz) < 0.0005f && hsb[1] > 0.4f;
+                    }
+                    if (limite && (r * 31 + g * 17 + b) % 7 == 0) cores.add(0xFF000000 | r << 16 | g << 8 | b);
+                }
+            }
+        }
+        // Os mesmos tons com alfa logo abaixo, no e logo acima do corte
+        List<Integer> comAlfa = new ArrayList<>(cores);
+        for (int i = 0; i < cores.size(); i += 50) {
+            for (int alfa : new int[]{99, 100, 101}) {
+                comAlfa.add(alfa << 24 | cores.get(i) & 0xFFFFFF);
+            }
+        }
+        return comAlfa;
+    }
+
+    /**
+     * Cópia do método original de {@code ConsumidorTime} (a mesma de {@code ExtratorCorDominanteBenchmark}).
+     */
+    static double[] original(BufferedImage img) {
+        if (img == null) return new double[]{0,0,0,0,0};
+
+        int redStrongCount = 0, redDarkCount = 0, yellowCount = 0, blueCount = 0, darkGreenCount = 0, lightGreenCount = 0;
+
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                Color pixel = new Color(img.getRGB(x, y), true);
+                if (pixel.getAlpha() < 100) continue;
+
+                int r = pixel.getRed();
+                int g = pixel.getGreen();
+                int b = pixel.getBlue();
+
+                if ((r > 220 && g > 220 && b > 220) || (r < 40 && g < 40 && b < 40)) continue;
+
+                float[] hsb = Color.RGBtoHSB(r, g, b, null);
+                float hue = hsb[0];
+                float saturation = hsb[1];
+                float brightness = hsb[2];
+
+                if (saturation > 0.4) {
+                    if ((hue >= 0.0 && hue < 0.05) || (hue > 0.95)) {
+                        if (brightness > 0.6) redStrongCount++;
+                        else redDarkCount++;
+                    } else if (hue >= 0.14 && hue < 0.19) {
+                        yellowCount++;
+                    } else if (hue >= 0.58 && hue < 0.7) {
+                        blueCount++;
+                    } else if (hue >= 0.25 && hue < 0.45) {
+                        if (brightness > 0.6) lightGreenCount++;
+                        else darkGreenCount++;
+                    }
+                }
+            }
+        }
+
+        int maxCount = Math.max(
+            redStrongCount,
+            Math.max(redDarkCount, Math.max(yellowCount, Math.max(blueCount, Math.max(darkGreenCount, lightGreenCount))))
+        );
+
+        if (maxCount == 0) return new double[]{0,0,0,0,0,0};
+        if (maxCount == redStrongCount) return new double[]{1,0,0,0,0,0};
+        if (maxCount == redDarkCount)   return new double[]{0,1,0,0,0,0};
+        if (maxCount == yellowCount)    return new double[]{0,0,1,0,0,0};
+        if (maxCount == blueCount)      return new double[]{0,0,0,1,0,0};
+        if (maxCount == darkGreenCount) return new double[]{0,0,0,0,1,0};
+        return new double[]{0,0,0,0,0,1};
+    }
+}
@@ -0,0 +1,110 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Armazém de conteúdo endereçado por hash, num diretório compartilhado com os consumidores
+ * (claim-check): imagens grandes vão para {@code <dir>/<2 primeiros hex>/<sha256>} e a mensagem
+ * leva só a referência. O mesmo conteúdo publicado várias vezes ocupa um único arquivo.
+ *
+ * O arquivo é escrito com outro nome e renomeado no fim, então um consumidor nunca encontra um
+ * blob pela metade.
+ *
+ * Os blobs não são apagados no ack: o mesmo arquivo serve a todas as publicações da imagem enquanto
+ * o gerador roda, e os consumidores montam o armazém só para leitura. Em vez disso,
+ * {@link #limpar(long)} renova a data dos blobs que este processo publica e apaga os demais quando
+ * ficam mais tempo que o prazo sem ser tocados (imagens de execuções anteriores do gerador).
+ */
+public final class ArmazemBlobs {
+
+    private final Path diretorio;
+    // Blobs referenciados pelas imagens carregadas por este processo; nunca são apagados por ele
+    private final Set<String> emUso = ConcurrentHashMap.newKeySet();
+
+    public ArmazemBlobs(Path diretorio) throws IOException {
+        this.diretorio = diretorio;
+        Files.createDirectories(diretorio);
+    }
+
+    /** Grava o conteúdo (se ainda não existir) e devolve o SHA-256 em hexadecimal que o identifica. */
+    public String guardar(byte[] conteudo) throws IOException {
+        String id = sha256(conteudo);
+        Path pasta = diretorio.resolve(id.substring(0, 2));
+        Path destino = pasta.resolve(id);
+        emUso.add(id);
+        if (Files.exists(destino) && Files.size(destino) == conteudo.length) {
+            // Volta a ser publicado: o prazo conta de novo a partir de agora
+            Files.setLastModifiedTime(destino, FileTime.fromMillis(System.currentTimeMillis()));
+            return id;
+        }
+
+        Files.createDirectories(pasta);
+        Path temporario = Files.createTempFile(pasta, id, ".tmp");
+        try {
+            Files.write(temporario, conteudo);
+            try {
+                Files.move(temporario, destino, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+        return id;
+    }
+
+    /**
+     * Renova a data dos blobs em uso e apaga os outros (e temporários abandonados) modificados há
+     * mais de {@code prazoMs}. Mensagens antigas ainda na fila continuam achando o blob por esse prazo.
+     *
+     * @return quantos arquivos foram apagados
+     */
+    public int limpar(long prazoMs) throws IOException {
+        long agora = System.currentTimeMillis();
+        FileTime renovado = FileTime.fromMillis(agora);
+        int apagados = 0;
+        try (DirectoryStream<Path> pastas = Files.newDirectoryStream(diretorio, Files::isDirectory)) {
+            for (Path pasta : pastas) {
+                try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(pasta)) {
+                    for (Path arquivo : arquivos) {
+                        try {
+                            if (emUso.contains(arquivo.getFileName().toString())) {
+                                Files.setLastModifiedTime(arquivo, renovado);
+                            } else if (agora - Files.getLastModifiedTime(arquivo).toMillis() > prazoMs
+                                    && Files.deleteIfExists(arquivo)) {
+                                apagados++;
+                            }
+                        } catch (NoSuchFileException e) {
+                            // apagado por outro processo no meio da varredura
+                        }
+                    }
+                }
+            }
+        }
+        return apagados;
+    }
+
+    private static String sha256(byte[] conteudo) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(conteudo);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
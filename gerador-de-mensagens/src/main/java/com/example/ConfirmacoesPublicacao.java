@@ -0,0 +1,110 @@
+package com.example;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher confirms assíncronos com uma janela limitada de mensagens aguardando confirmação.
+ *
+ * Antes de cada publicação uma vaga da janela é ocupada e o instante é guardado pelo número de
+ * sequência do canal; o ack (ou nack) do broker libera a vaga e registra a latência da confirmação
+ * em microssegundos. Com a janela cheia o publicador espera, então o broker dita o ritmo.
+ */
+public final class ConfirmacoesPublicacao implements ConfirmListener {
+
+    private final Semaphore janela;
+    /** Número de sequência -> System.nanoTime() da publicação. */
+    private final ConcurrentSkipListMap<Long, Long> pendentes = new ConcurrentSkipListMap<>();
+    private final Recorder latencias = new Recorder(3);
+    private final AtomicLong confirmadas = new AtomicLong();
+    private final AtomicLong rejeitadas = new AtomicLong();
+
+    public ConfirmacoesPublicacao(int tamanhoJanela) {
+        this.janela = new Semaphore(Math.max(1, tamanhoJanela));
+    }
+
+    /**
+     * Ocupa uma vaga da janela (bloqueando se estiver cheia) e devolve o número de sequência da próxima publicação.
+     */
+    public long antesDePublicar(Channel canal) throws InterruptedException {
+        janela.acquire();
+        long sequencia = canal.getNextPublishSeqNo();
+        pendentes.put(sequencia, System.nanoTime());
+        return sequencia;
+    }
+
+    /** Devolve a vaga de uma publicação que falhou antes de chegar ao broker. */
+    public void falhaAoPublicar(long sequencia) {
+        if (pendentes.remove(sequencia) != null) {
+            janela.release();
+        }
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        resolver(deliveryTag, multiple, true);
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        resolver(deliveryTag, multiple, false);
+    }
+
+    private void resolver(long deliveryTag, boolean multiple, boolean aceitas) {
+        long agora = System.nanoTime();
+        ConcurrentNavigableMap<Long, Long> resolvidas = multiple
+                ? pendentes.headMap(deliveryTag, true)
+                : pendentes.subMap(deliveryTag, true, deliveryTag, true);
+        Iterator<Map.Entry<Long, Long>> it = resolvidas.entrySet().iterator();
+        while (it.hasNext()) {
+            long publicadaEm = it.next().getValue();
+            it.remove();
+            if (aceitas) {
+                latencias.recordValue(Math.max(0, (agora - publicadaEm) / 1000));
+                confirmadas.incrementAndGet();
+            } else {
+                rejeitadas.incrementAndGet();
+            }
+            janela.release();
+        }
+    }
+
+    /** Latências de confirmação (µs) registradas desde a chamada anterior. */
+    public Histogram latenciasDoIntervalo() {
+        return latencias.getIntervalHistogram();
+    }
+
+    public long confirmadas() {
+        return confirmadas.get();
+    }
+
+    public long rejeitadas() {
+        return rejeitadas.get();
+    }
+
+    public int pendentes() {
+        return pendentes.size();
+    }
+
+    /**
+     * Espera o broker responder todas as publicações pendentes. Retorna false se o prazo acabar antes.
+     */
+    public boolean aguardarTodas(long prazoMs) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(prazoMs);
+        while (!pendentes.isEmpty()) {
+            if (System.nanoTime() > limite) return false;
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        return true;
+    }
+}
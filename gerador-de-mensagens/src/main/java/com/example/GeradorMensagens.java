@@ -5,15 +5,23 @@ import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 
+import org.HdrHistogram.Histogram;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class GeradorMensagens {
 
@@ -21,6 +29,56 @@ public class GeradorMensagens {
     private static final String BASE_IMAGE_PATH = "/app/imagens";
     private static final Random random = new Random();
 
+    // "lotes" envia 3 faces e 2 times a cada 2 segundos; "carga" publica sem pausa para testar os consumidores
+    private static final String MODO = lerTexto("MODO", "lotes");
+    // Modo carga: mensagens por segundo (0 = o mais rápido possível), % de faces e duração (0 = sem fim)
+    private static final int TAXA_ALVO = lerConfig("TAXA_ALVO", 0);
+    private static final int PROPORCAO_FACES = lerConfig("PROPORCAO_FACES", 60);
+    private static final int DURACAO_S = lerConfig("DURACAO_S", 0);
+    private static final int RELATORIO_S = lerConfig("RELATORIO_S", 5);
+    // Publicações aguardando confirmação do broker; com a janela cheia o gerador espera
+    private static final int JANELA_CONFIRMACOES = lerConfig("JANELA_CONFIRMACOES", 256);
+    // Claim-check: imagens acima de CLAIM_CHECK_KB vão para o armazém compartilhado e a mensagem leva só a referência (0 desliga)
+    private static final int CLAIM_CHECK_KB = lerConfig("CLAIM_CHECK_KB", 0);
+    private static final String ARMAZEM_BLOBS = lerTexto("ARMAZEM_BLOBS", "/app/blobs");
+    // Blobs que este gerador não publica são apagados depois de BLOBS_TTL_S sem uso (0 mantém todos)
+    private static final int BLOBS_TTL_S = lerConfig("BLOBS_TTL_S", 86400);
+    // Prioridade AMQP de cada tipo (0 = sem prioridade); só vale em filas declaradas com x-max-priority
+    private static final int PRIORIDADE_FACES = lerConfig("PRIORIDADE_FACES", 0);
+    private static final int PRIORIDADE_TIMES = lerConfig("PRIORIDADE_TIMES", 0);
+
+    // Identifica as mensagens deste processo: message_id = <prefixo>-<sequência>
+    private static final String PREFIXO_ID = Long.toHexString(System.currentTimeMillis());
+    private static final AtomicLong proximoId = new AtomicLong();
+
+    /**
+     * Imagem lida uma única vez, pronta para ser publicada quantas vezes for preciso. Com claim-check,
+     * o corpo fica vazio e a imagem é referenciada pelo id no armazém.
+     */
+    private static final class Imagem {
+        final String routingKey;
+        final String nome;
+        final byte[] corpo;
+        final String blob;
+        final long tamanho;
+        final int prioridade;
+
+        Imagem(String routingKey, int prioridade, File arquivo, ArmazemBlobs armazem) throws IOException {
+            this.routingKey = routingKey;
+            this.prioridade = prioridade;
+            this.nome = arquivo.getName();
+            byte[] conteudo = Files.readAllBytes(arquivo.toPath());
+            this.tamanho = conteudo.length;
+            if (armazem != null && conteudo.length > CLAIM_CHECK_KB * 1024L) {
+                this.blob = armazem.guardar(conteudo);
+                this.corpo = new byte[0];
+            } else {
+                this.blob = null;
+                this.corpo = conteudo;
+            }
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         ConnectionFactory factory = new ConnectionFactory();
         factory.setHost("rabbitmq");
@@ -41,49 +99,214 @@ public class GeradorMensagens {
             return;
         }
 
+        ArmazemBlobs armazem = CLAIM_CHECK_KB > 0 ? new ArmazemBlobs(Paths.get(ARMAZEM_BLOBS)) : null;
+        List<Imagem> faces = carregar("face.image", PRIORIDADE_FACES, faceFiles, armazem);
+        List<Imagem> times = carregar("team.logo", PRIORIDADE_TIMES, teamFiles, armazem);
+        if (armazem != null && BLOBS_TTL_S > 0) {
+            agendarLimpeza(armazem);
+        }
+
         try (Connection connection = factory.newConnection(); Channel channel = connection.createChannel()) {
             channel.exchangeDeclare(EXCHANGE_NAME, "topic");
-            System.out.println("Gerador pronto para enviar lotes equilibrados de imagens.");
+            ConfirmacoesPublicacao confirmacoes = new ConfirmacoesPublicacao(JANELA_CONFIRMACOES);
+            channel.confirmSelect();
+            channel.addConfirmListener(confirmacoes);
 
-            while (true) {
-                System.out.println("\n--- Enviando lote equilibrado (3 faces, 2 times) ---");
+            if (MODO.equalsIgnoreCase("carga")) {
+                gerarCarga(channel, confirmacoes, faces, times);
+            } else {
+                enviarLotes(channel, confirmacoes, faces, times);
+            }
+        }
+    }
 
-                // <<< ALTERAÇÃO 2: Laços de envio separados >>>
-                
-                // Envia 3 imagens de faces
-                for (int i = 0; i < 3; i++) {
-                    File imageFile = faceFiles.get(random.nextInt(faceFiles.size()));
-                    publishImage(channel, "face.image", imageFile);
-                }
+    private static void enviarLotes(Channel channel, ConfirmacoesPublicacao confirmacoes,
+                                    List<Imagem> faces, List<Imagem> times) throws Exception {
+        System.out.println("Gerador pronto para enviar lotes equilibrados de imagens.");
 
-                // Envia 2 imagens de times
-                for (int i = 0; i < 2; i++) {
-                    File imageFile = teamFiles.get(random.nextInt(teamFiles.size()));
-                    publishImage(channel, "team.logo", imageFile);
-                }
+        while (true) {
+            System.out.println("\n--- Enviando lote equilibrado (3 faces, 2 times) ---");
+
+            // <<< ALTERAÇÃO 2: Laços de envio separados >>>
+
+            // Envia 3 imagens de faces
+            for (int i = 0; i < 3; i++) {
+                Imagem imagem = faces.get(random.nextInt(faces.size()));
+                publishImage(channel, confirmacoes, imagem);
+                System.out.println(" [x] Enviado '" + imagem.routingKey + "':'" + imagem.nome + "'");
+            }
+
+            // Envia 2 imagens de times
+            for (int i = 0; i < 2; i++) {
+                Imagem imagem = times.get(random.nextInt(times.size()));
+                publishImage(channel, confirmacoes, imagem);
+                System.out.println(" [x] Enviado '" + imagem.routingKey + "':'" + imagem.nome + "'");
+            }
+
+            System.out.println("--- Lote enviado (" + confirmacoes.confirmadas() + " confirmadas, "
+                    + confirmacoes.rejeitadas() + " rejeitadas até agora). Aguardando 2 segundos... ---");
+            TimeUnit.SECONDS.sleep(2);
+        }
+    }
+
+    /**
+     * Modo de carga: publica na taxa alvo (ou sem limite), sorteando faces e times na proporção
+     * configurada, e relata periodicamente a vazão e os percentis da latência de confirmação.
+     */
+    private static void gerarCarga(Channel channel, ConfirmacoesPublicacao confirmacoes,
+                                   List<Imagem> faces, List<Imagem> times) throws Exception {
+        System.out.println("Gerador em modo carga: " + (TAXA_ALVO > 0 ? TAXA_ALVO + " msg/s" : "sem limite de taxa")
+                + ", " + PROPORCAO_FACES + "% faces, janela de " + JANELA_CONFIRMACOES + " confirmações"
+                + (DURACAO_S > 0 ? ", " + DURACAO_S + " s" : ""));
+
+        AtomicLong enviadas = new AtomicLong();
+        Histogram total = new Histogram(3);
+        long inicio = System.nanoTime();
+        ScheduledExecutorService relatorio = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "relatorio-carga");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] anterior = {0, 0};
+        relatorio.scheduleAtFixedRate(() -> {
+            Histogram intervalo = confirmacoes.latenciasDoIntervalo();
+            synchronized (total) {
+                total.add(intervalo);
+            }
+            long enviadasAgora = enviadas.get();
+            long confirmadasAgora = confirmacoes.confirmadas();
+            System.out.printf(" [carga] enviadas %.0f msg/s, confirmadas %.0f msg/s, rejeitadas %d, pendentes %d, confirmação %s%n",
+                    (enviadasAgora - anterior[0]) / (double) RELATORIO_S, (confirmadasAgora - anterior[1]) / (double) RELATORIO_S,
+                    confirmacoes.rejeitadas(), confirmacoes.pendentes(), percentis(intervalo));
+            anterior[0] = enviadasAgora;
+            anterior[1] = confirmadasAgora;
+        }, RELATORIO_S, RELATORIO_S, TimeUnit.SECONDS);
 
-                System.out.println("--- Lote enviado. Aguardando 2 segundos... ---");
-                TimeUnit.SECONDS.sleep(2);
+        long intervaloNs = TAXA_ALVO > 0 ? TimeUnit.SECONDS.toNanos(1) / TAXA_ALVO : 0;
+        long duracaoNs = TimeUnit.SECONDS.toNanos(DURACAO_S);
+        while (DURACAO_S == 0 || System.nanoTime() - inicio < duracaoNs) {
+            if (intervaloNs > 0) {
+                // Agenda pelo relógio desde o início, então um atraso é compensado nas próximas mensagens
+                long espera = inicio + enviadas.get() * intervaloNs - System.nanoTime();
+                if (espera > 0) LockSupport.parkNanos(espera);
             }
+            List<Imagem> tipo = random.nextInt(100) < PROPORCAO_FACES ? faces : times;
+            publishImage(channel, confirmacoes, tipo.get(random.nextInt(tipo.size())));
+            enviadas.incrementAndGet();
         }
+
+        boolean todas = confirmacoes.aguardarTodas(30_000);
+        relatorio.shutdownNow();
+        relatorio.awaitTermination(5, TimeUnit.SECONDS);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        synchronized (total) {
+            total.add(confirmacoes.latenciasDoIntervalo());
+            System.out.printf("%n[carga] %d mensagens em %.1f s (%.0f msg/s); %d confirmadas, %d rejeitadas%s%n"
+                            + "[carga] latência de confirmação: %s%n",
+                    enviadas.get(), segundos, enviadas.get() / segundos, confirmacoes.confirmadas(), confirmacoes.rejeitadas(),
+                    todas ? "" : ", " + confirmacoes.pendentes() + " sem resposta", percentis(total));
+        }
+    }
+
+    private static String percentis(Histogram latenciasUs) {
+        if (latenciasUs.getTotalCount() == 0) return "sem amostras";
+        return String.format("p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, máx %.2f ms",
+                latenciasUs.getValueAtPercentile(50) / 1000.0, latenciasUs.getValueAtPercentile(90) / 1000.0,
+                latenciasUs.getValueAtPercentile(99) / 1000.0, latenciasUs.getValueAtPercentile(99.9) / 1000.0,
+                latenciasUs.getMaxValue() / 1000.0);
     }
 
     /**
      * <<< NOVO MÉTODO AUXILIAR >>>
      * Encapsula a lógica de publicação de uma imagem para evitar repetição de código.
+     * Bloqueia enquanto a janela de confirmações estiver cheia. Os headers levam, além do nome do
+     * arquivo, um id único e o instante da publicação (µs desde a época) para as métricas de latência.
+     * Imagens no armazém vão com corpo vazio e os headers {@code blob_sha256} e {@code blob_tamanho}.
      */
-    private static void publishImage(Channel channel, String routingKey, File imageFile) throws IOException {
-        byte[] messageBody = Files.readAllBytes(imageFile.toPath());
-
+    private static void publishImage(Channel channel, ConfirmacoesPublicacao confirmacoes, Imagem imagem)
+            throws IOException, InterruptedException {
+        long sequencia = confirmacoes.antesDePublicar(channel);
         Map<String, Object> headers = new HashMap<>();
-        headers.put("filename", imageFile.getName());
+        headers.put("filename", imagem.nome);
+        headers.put("message_id", PREFIXO_ID + "-" + proximoId.incrementAndGet());
+        Instant agora = Instant.now();
+        headers.put("publicado_em_us", agora.getEpochSecond() * 1_000_000L + agora.getNano() / 1000);
+        if (imagem.blob != null) {
+            headers.put("blob_sha256", imagem.blob);
+            headers.put("blob_tamanho", imagem.tamanho);
+        }
 
         AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
                 .headers(headers)
+                .priority(imagem.prioridade > 0 ? imagem.prioridade : null)
                 .build();
+        try {
+            channel.basicPublish(EXCHANGE_NAME, imagem.routingKey, props, imagem.corpo);
+        } catch (IOException | RuntimeException e) {
+            confirmacoes.falhaAoPublicar(sequencia);
+            throw e;
+        }
+    }
+
+    /**
+     * Varre o armazém logo ao iniciar e depois a cada quarto do prazo (no máximo a cada hora).
+     */
+    private static void agendarLimpeza(ArmazemBlobs armazem) {
+        ScheduledExecutorService limpeza = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "limpeza-blobs");
+            t.setDaemon(true);
+            return t;
+        });
+        long intervaloS = Math.max(1, Math.min(3600, BLOBS_TTL_S / 4));
+        limpeza.scheduleWithFixedDelay(() -> {
+            // Uma exceção que escapasse cancelaria as próximas varreduras
+            try {
+                int apagados = armazem.limpar(TimeUnit.SECONDS.toMillis(BLOBS_TTL_S));
+                if (apagados > 0) {
+                    System.out.println(" [blobs] " + apagados + " blob(s) sem uso há mais de " + BLOBS_TTL_S + " s apagado(s)");
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("AVISO: falha ao limpar o armazém " + ARMAZEM_BLOBS + ": " + e.getMessage());
+            }
+        }, 0, intervaloS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Lê o conteúdo de todas as imagens uma única vez, para que nenhum envio dependa do disco.
+     */
+    private static List<Imagem> carregar(String routingKey, int prioridade, List<File> arquivos, ArmazemBlobs armazem)
+            throws IOException {
+        List<Imagem> imagens = new ArrayList<>(arquivos.size());
+        long bytes = 0;
+        int noArmazem = 0;
+        for (File arquivo : arquivos) {
+            Imagem imagem = new Imagem(routingKey, prioridade, arquivo, armazem);
+            imagens.add(imagem);
+            bytes += imagem.corpo.length;
+            if (imagem.blob != null) noArmazem++;
+        }
+        System.out.println("Carregadas " + imagens.size() + " imagens '" + routingKey + "' (" + bytes / 1024 + " KB) na memória"
+                + (noArmazem > 0 ? ", " + noArmazem + " acima de " + CLAIM_CHECK_KB + " KB no armazém " + ARMAZEM_BLOBS : "") + ".");
+        return imagens;
+    }
+
+    /**
+     * Lê uma configuração inteira das variáveis de ambiente, usando o valor padrão quando ausente ou inválida.
+     */
+    private static int lerConfig(String nome, int padrao) {
+        String valor = System.getenv(nome);
+        if (valor == null || valor.isBlank()) return padrao;
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("AVISO: valor inválido para " + nome + " ('" + valor + "'). Usando " + padrao + ".");
+            return padrao;
+        }
+    }
 
-        channel.basicPublish(EXCHANGE_NAME, routingKey, props, messageBody);
-        System.out.println(" [x] Enviado '" + routingKey + "':'" + imageFile.getName() + "'");
+    private static String lerTexto(String nome, String padrao) {
+        String valor = System.getenv(nome);
+        return valor == null ? padrao : valor.trim();
     }
 
     /**